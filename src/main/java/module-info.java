@@ -1,6 +1,7 @@
 module org.yorm {
     requires java.sql;
     requires org.slf4j;
+    requires static org.postgresql.jdbc;
     exports org.yorm;
     opens org.yorm;
 }
@@ -7,10 +7,6 @@ import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.SerializedLambda;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Function;
 
 /**
@@ -28,29 +24,43 @@ public interface IdentifiableFunction<T, R> extends Serializable {
 
     class PrivateData
     {
-        static PrivateData INSTANCE = new PrivateData();
+        /**
+         * Every instance of a lambda class points to the same method, so its name is resolved once per class. The holder is
+         * filled from the first instance seen, since a {@link ClassValue} can't reach one by itself. Resolving it twice
+         * under contention is harmless.
+         */
+        static final ClassValue<FunctionName> FUNCTION_NAMES = new ClassValue<>() {
+            @Override
+            protected FunctionName computeValue(Class<?> type) {
+                return new FunctionName();
+            }
+        };
 
-        final Map<Class<?>, MethodHandle> writeReplaceMethodHandles = new HashMap<>();
+        static final class FunctionName {
+            volatile String name;
+        }
 
         private PrivateData() {
         }
     }
 
     private static String getCallingFunctionName(IdentifiableFunction<?, ?> identifiableFunction) {
+        PrivateData.FunctionName functionName = PrivateData.FUNCTION_NAMES.get(identifiableFunction.getClass());
+        String name = functionName.name;
+        if (name == null) {
+            name = resolveFunctionName(identifiableFunction);
+            functionName.name = name;
+        }
+        return name;
+    }
+
+    private static String resolveFunctionName(IdentifiableFunction<?, ?> identifiableFunction) {
         try {
-            MethodHandle writeReplaceMethodHandle =
-                    PrivateData.INSTANCE.writeReplaceMethodHandles.computeIfAbsent(identifiableFunction.getClass(), clazz -> {
-                        try {
-                            return MethodHandles.privateLookupIn(clazz, MethodHandles.lookup()).findVirtual(
-                                    identifiableFunction.getClass(),
-                                    "writeReplace",
-                                    MethodType.methodType(Object.class)
-                            );
-                        } catch (NoSuchMethodException | IllegalAccessException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-                );
+            MethodHandle writeReplaceMethodHandle = MethodHandles.privateLookupIn(identifiableFunction.getClass(), MethodHandles.lookup()).findVirtual(
+                identifiableFunction.getClass(),
+                "writeReplace",
+                MethodType.methodType(Object.class)
+            );
             SerializedLambda serializedLambda = (SerializedLambda) writeReplaceMethodHandle.invoke(identifiableFunction);
 
             return serializedLambda.getImplMethodName();
@@ -1,43 +1,168 @@
 package org.yorm;
 
-import static org.yorm.util.RowRecordConverter.converterFor;
-
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 import javax.sql.DataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.yorm.db.Dialect;
 import org.yorm.exception.YormException;
+import org.yorm.util.Accessor;
+import org.yorm.util.CodecRegistry;
+import org.yorm.util.ColumnBinder;
 import org.yorm.util.DbType;
-import org.yorm.util.Levenshtein;
+import org.yorm.util.NameMatcher;
+import org.yorm.util.RowRecordConverter.Converter;
 
 public class MapBuilder {
 
     private final DataSource ds;
+    private final CodecRegistry codecRegistry;
     private static Logger logger = LoggerFactory.getLogger(MapBuilder.class);
+    private static final byte[] NULL_FIELD = {0};
+    private static final String PRIMARY_KEYS_QUERY = "SELECT k.table_name, k.column_name FROM information_schema.table_constraints t"
+        + " JOIN information_schema.key_column_usage k ON k.constraint_schema = t.constraint_schema"
+        + " AND k.constraint_name = t.constraint_name AND k.table_name = t.table_name"
+        + " WHERE t.constraint_type = 'PRIMARY KEY' AND t.table_schema = ?";
+    private static final String SCHEMA_FINGERPRINT_QUERY = "SELECT c.table_name, c.column_name, c.data_type, c.is_nullable, c.column_default,"
+        + " c.character_maximum_length, c.numeric_precision, c.numeric_scale, t.constraint_type"
+        + " FROM information_schema.columns c"
+        + " LEFT JOIN information_schema.key_column_usage k ON k.table_schema = c.table_schema AND k.table_name = c.table_name"
+        + " AND k.column_name = c.column_name"
+        + " LEFT JOIN information_schema.table_constraints t ON t.constraint_schema = k.constraint_schema"
+        + " AND t.constraint_name = k.constraint_name AND t.table_name = k.table_name AND t.constraint_type = 'PRIMARY KEY'"
+        + " WHERE c.table_schema = ? AND c.table_name IN (";
 
     public MapBuilder(DataSource ds) {
+        this(ds, new CodecRegistry());
+    }
+
+    public MapBuilder(DataSource ds, CodecRegistry codecRegistry) {
         this.ds = ds;
+        this.codecRegistry = codecRegistry;
     }
 
     public <T extends Record> YormTable buildMap(Class<T> recordClass) throws YormException {
-        String recordClassName = recordClass.getSimpleName().toLowerCase(Locale.ROOT);
-        String dbTable = recordClassName;
+        return buildMaps(List.of(recordClass)).get(recordClass);
+    }
+
+    public Map<Class<? extends Record>, YormTable> buildMaps(Collection<Class<? extends Record>> recordClasses) throws YormException {
+        Map<Class<? extends Record>, String> dbTables = new HashMap<>();
+        Map<String, List<Description>> descriptions;
+        try (Connection connection = ds.getConnection()) {
+            NameMatcher tableMatcher = new NameMatcher(getTableNames(connection));
+            for (Class<? extends Record> recordClass : recordClasses) {
+                dbTables.put(recordClass, tableMatcher.findClosest(getRecordClassName(recordClass)));
+            }
+            descriptions = getDescriptions(connection, new HashSet<>(dbTables.values()));
+        } catch (SQLException e) {
+            throw new YormException("Error mapping records " + recordClasses.stream().map(this::getRecordClassName).toList(), e);
+        }
+        return buildMaps(dbTables, descriptions);
+    }
+
+    /**
+     * Builds the mappings out of already known tables and column descriptions, without touching the database.
+     */
+    Map<Class<? extends Record>, YormTable> buildMaps(Map<Class<? extends Record>, String> dbTables, Map<String, List<Description>> descriptions)
+        throws YormException {
+        Map<Class<? extends Record>, YormTable> yormTables = new ConcurrentHashMap<>();
+        List<YormException> errors = new CopyOnWriteArrayList<>();
+        dbTables.keySet().parallelStream().forEach(recordClass -> {
+            String dbTable = dbTables.get(recordClass);
+            try {
+                yormTables.put(recordClass, buildMap(recordClass, dbTable, descriptions.get(dbTable)));
+            } catch (YormException e) {
+                errors.add(e);
+            }
+        });
+        if (!errors.isEmpty()) {
+            YormException error = errors.get(0);
+            errors.stream().skip(1).forEach(error::addSuppressed);
+            throw error;
+        }
+        return yormTables;
+    }
+
+    Map<String, List<Description>> describe(Collection<String> dbTables) throws YormException {
+        try (Connection connection = ds.getConnection()) {
+            return getDescriptions(connection, dbTables);
+        } catch (SQLException e) {
+            throw new YormException("Error describing tables " + dbTables, e);
+        }
+    }
+
+    /**
+     * Fingerprints the columns and primary keys of the tables with a single query on the information schema, which is
+     * much cheaper than describing them, to tell on every start which tables have changed since a snapshot was taken.
+     *
+     * @return the fingerprints by table, empty when the database has no information schema
+     */
+    Map<String, Long> schemaFingerprints(Collection<String> dbTables) throws YormException {
+        if (dbTables.isEmpty()) {
+            return Map.of();
+        }
+        String sql = SCHEMA_FINGERPRINT_QUERY + String.join(", ", Collections.nCopies(dbTables.size(), "?"))
+            + ") ORDER BY c.table_name, c.ordinal_position, t.constraint_type";
+        Map<String, CRC32> crcs = new HashMap<>();
+        try (Connection connection = ds.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            int paramIndex = 1;
+            preparedStatement.setString(paramIndex++, currentSchema(connection));
+            for (String dbTable : dbTables) {
+                preparedStatement.setString(paramIndex++, dbTable);
+            }
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    CRC32 crc = crcs.computeIfAbsent(rs.getString(1), table -> new CRC32());
+                    for (int i = 2; i <= 9; i++) {
+                        String value = rs.getString(i);
+                        crc.update(value == null ? NULL_FIELD : (value + '\t').getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("Couldn't fingerprint tables {} with the information schema", dbTables, e);
+            return Map.of();
+        }
+        Map<String, Long> fingerprints = new HashMap<>();
+        crcs.forEach((dbTable, crc) -> fingerprints.put(dbTable, crc.getValue()));
+        return fingerprints;
+    }
+
+    static long fingerprint(List<Description> descriptionList) {
+        CRC32 crc = new CRC32();
+        for (Description description : descriptionList) {
+            crc.update(description.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+
+    private YormTable buildMap(Class<? extends Record> recordClass, String dbTable, List<Description> descriptionList) throws YormException {
         Field[] objectFields = recordClass.getDeclaredFields();
         Map<String, Method> methods = Arrays.stream(recordClass.getDeclaredMethods())
             .collect(Collectors.toMap(
@@ -45,13 +170,10 @@ public class MapBuilder {
                 method -> method
             ));
         List<YormTuple> tuples;
-        try (Connection connection = ds.getConnection()) {
-            DatabaseMetaData metaData = connection.getMetaData();
-            dbTable = getMatchingTableName(metaData, recordClassName);
-            List<Description> descriptionList = getDescription(metaData, dbTable);
+        try {
             tuples = populateMap(objectFields, descriptionList, methods);
-        } catch (SQLException | YormException e) {
-            throw new YormException("Error mapping record " + recordClassName, e);
+        } catch (YormException | RuntimeException e) {
+            throw new YormException("Error mapping record " + getRecordClassName(recordClass), e);
         }
         if (logger.isDebugEnabled()) {
             logger.debug("Record:{} mapped to table:{}", recordClass.getName(), dbTable);
@@ -65,7 +187,43 @@ public class MapBuilder {
         return new YormTable(dbTable, tuples, constructor);
     }
 
-    private <T extends Record> Constructor<Record> findMatchingConstructor(Class<T> recordClass, List<YormTuple> tuples) throws YormException {
+    /**
+     * Maps a narrower record onto some of the columns of an already mapped table, so that only those columns are read. Its
+     * components are matched with the ones of the table's record by name, or else with the closest column.
+     */
+    YormTable buildProjection(YormTable source, Class<? extends Record> projectionClass) throws YormException {
+        NameMatcher columnMatcher = new NameMatcher(source.tuples().stream().map(YormTuple::dbFieldName).toList());
+        List<YormTuple> tuples = new ArrayList<>();
+        try {
+            for (RecordComponent component : projectionClass.getRecordComponents()) {
+                YormTuple sourceTuple = source.tuplesByObjectFieldName().get(component.getName());
+                if (sourceTuple == null) {
+                    sourceTuple = source.getTupleWithDBFieldName(columnMatcher.findClosest(component.getName()));
+                }
+                tuples.add(buildTuple(
+                    sourceTuple.dbFieldName(),
+                    component.getName(),
+                    sourceTuple.type(),
+                    sourceTuple.size(),
+                    sourceTuple.isNullable(),
+                    sourceTuple.isPrimaryKey(),
+                    sourceTuple.isAutoincrement(),
+                    component.getAccessor()
+                ));
+            }
+        } catch (YormException | RuntimeException e) {
+            throw new YormException("Error mapping projection " + getRecordClassName(projectionClass) + " of table " + source.dbTable(), e);
+        }
+        Constructor<Record> constructor = findMatchingConstructor(projectionClass, tuples);
+        tuples = sortParametersForConstructor(tuples, constructor);
+        return new YormTable(source.dbTable(), tuples, constructor);
+    }
+
+    private String getRecordClassName(Class<? extends Record> recordClass) {
+        return recordClass.getSimpleName().toLowerCase(Locale.ROOT);
+    }
+
+    private Constructor<Record> findMatchingConstructor(Class<? extends Record> recordClass, List<YormTuple> tuples) throws YormException {
         Constructor<Record>[] constructors = (Constructor<Record>[]) recordClass.getConstructors();
         for (Constructor<Record> constructor : constructors) {
             Parameter[] params = constructor.getParameters();
@@ -88,29 +246,28 @@ public class MapBuilder {
         return sortedList;
     }
 
-    private String getMatchingTableName(DatabaseMetaData metaData, String recordClassName) throws SQLException {
-        ResultSet resultSet = metaData.getTables(null, null, null, new String[]{"TABLE", "VIEW"});
+    private List<String> getTableNames(Connection connection) throws SQLException {
         List<String> tables = new ArrayList<>();
-        while (resultSet.next()) {
-            tables.add(resultSet.getString("TABLE_NAME"));
+        try (ResultSet resultSet = connection.getMetaData().getTables(connection.getCatalog(), connection.getSchema(), null, new String[]{"TABLE", "VIEW"})) {
+            while (resultSet.next()) {
+                tables.add(resultSet.getString("TABLE_NAME"));
+            }
         }
-        return findClosest(tables, recordClassName);
+        return tables;
     }
 
     private List<YormTuple> populateMap(Field[] objectFields, List<Description> descriptionList, Map<String, Method> methods) throws YormException {
         List<YormTuple> tuples = new ArrayList<>();
         Set<String> alreadyUsedObjectFields = new HashSet<>();
-        List<String> objectFieldNames = Arrays.stream(objectFields).map(Field::getName).toList();
+        NameMatcher fieldMatcher = new NameMatcher(Arrays.stream(objectFields).map(Field::getName).toList());
         for (Description description : descriptionList) {
-            String objectField = findClosest(objectFieldNames, description.columnName());
+            String objectField = fieldMatcher.findClosest(description.columnName());
             if (objectField != null && alreadyUsedObjectFields.contains(objectField)) {
                 continue;
             }
             Method method = methods.get(objectField.toLowerCase());
             alreadyUsedObjectFields.add(objectField);
-            Class<?> recordType = method.getReturnType();
-            Class<?> dbType = DbType.getType(description.type()).javaType;
-            var tuple = new YormTuple(
+            tuples.add(buildTuple(
                 description.columnName(),
                 objectField,
                 DbType.getType(description.type()),
@@ -118,16 +275,33 @@ public class MapBuilder {
                 yesNoToBoolean(description.isNullable()),
                 description.isPrimaryKey(),
                 yesNoToBoolean(description.isAutoincrement()),
-                method,
-                converterFor(recordType, dbType),
-                converterFor(dbType, recordType)
-            );
-            tuples.add(tuple);
-
+                method
+            ));
         }
         return tuples;
     }
 
+    private YormTuple buildTuple(String dbFieldName, String objectFieldName, DbType type, int size, boolean isNullable, boolean isPrimaryKey,
+        boolean isAutoincrement, Method method) throws YormException {
+        Class<?> recordType = method.getReturnType();
+        Accessor accessor = Accessor.of(method);
+        Converter<?> serializer = codecRegistry.serializerFor(recordType, type.javaType);
+        return new YormTuple(
+            dbFieldName,
+            objectFieldName,
+            type,
+            size,
+            isNullable,
+            isPrimaryKey,
+            isAutoincrement,
+            method,
+            accessor,
+            serializer,
+            codecRegistry.converterFor(type.javaType, recordType),
+            ColumnBinder.of(method, dbFieldName, type, accessor, serializer)
+        );
+    }
+
     private boolean yesNoToBoolean(String str) throws YormException {
         if (str == null || str.isBlank()) {
             return false;
@@ -142,16 +316,23 @@ public class MapBuilder {
 
     }
 
-    private List<Description> getDescription(DatabaseMetaData metaData, String table) throws SQLException {
-        List<Description> descriptionList = new ArrayList<>();
-        List<String> primaryKeysColumns = new ArrayList<>();
-        try (ResultSet rsColumn = metaData.getPrimaryKeys(null, null, table)) {
-            while (rsColumn.next()) {
-                primaryKeysColumns.add(rsColumn.getString("COLUMN_NAME"));
-            }
+    /**
+     * Describes all the tables at once, with a single call for the columns of the current schema and a single query for
+     * the primary keys, instead of two calls for each table. Tables that aren't found have no columns.
+     */
+    private Map<String, List<Description>> getDescriptions(Connection connection, Collection<String> tables) throws SQLException {
+        Map<String, List<Description>> descriptions = new HashMap<>();
+        for (String table : tables) {
+            descriptions.put(table, new ArrayList<>());
         }
-        try (ResultSet rsColumn = metaData.getColumns(null, null, table, null)) {
+        Map<String, Set<String>> primaryKeys = getPrimaryKeys(connection, descriptions.keySet());
+        try (ResultSet rsColumn = connection.getMetaData().getColumns(connection.getCatalog(), connection.getSchema(), "%", null)) {
             while (rsColumn.next()) {
+                String table = rsColumn.getString("TABLE_NAME");
+                List<Description> descriptionList = descriptions.get(table);
+                if (descriptionList == null) {
+                    continue;
+                }
                 String columnName = rsColumn.getString("COLUMN_NAME");
                 String typeName = rsColumn.getString("TYPE_NAME");
                 String type;
@@ -163,34 +344,60 @@ public class MapBuilder {
                 String size = rsColumn.getString("COLUMN_SIZE");
                 String isNull = rsColumn.getString("IS_NULLABLE");
                 String isAutoincrement = rsColumn.getString("IS_AUTOINCREMENT");
-                boolean isPrimaryKey = primaryKeysColumns.contains(columnName);
+                boolean isPrimaryKey = primaryKeys.getOrDefault(table, Set.of()).contains(columnName);
                 descriptionList.add(new Description(columnName, type, size, isNull, isPrimaryKey, isAutoincrement));
             }
-        } catch (SQLException e) {
-            logger.error("Error mapping table {}", table, e);
         }
-        return descriptionList;
+        return descriptions;
     }
 
-    private record Description(String columnName, String type, String size, String isNullable, Boolean isPrimaryKey, String isAutoincrement) {
-
+    /**
+     * The primary key columns of the current schema, by table, read all at once. The PostgreSQL driver lists them all when
+     * no table is given, and its information schema only shows the tables the user can write to. Other databases are asked
+     * with a single query on the information schema, and table by table through the driver when they don't have one.
+     */
+    private Map<String, Set<String>> getPrimaryKeys(Connection connection, Collection<String> tables) throws SQLException {
+        Map<String, Set<String>> primaryKeys = new HashMap<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        if (Dialect.of(connection) == Dialect.POSTGRESQL) {
+            readPrimaryKeys(metaData, connection.getCatalog(), connection.getSchema(), null, primaryKeys);
+            return primaryKeys;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement(PRIMARY_KEYS_QUERY)) {
+            preparedStatement.setString(1, currentSchema(connection));
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    primaryKeys.computeIfAbsent(rs.getString(1), table -> new HashSet<>()).add(rs.getString(2));
+                }
+            }
+            return primaryKeys;
+        } catch (SQLException e) {
+            logger.debug("Couldn't read the primary keys from the information schema, reading them table by table", e);
+        }
+        for (String table : tables) {
+            readPrimaryKeys(metaData, connection.getCatalog(), connection.getSchema(), table, primaryKeys);
+        }
+        return primaryKeys;
     }
 
-    private String findClosest(List<String> candidates, String target) {
-        String closest = null;
-        int distance = 100;
-        for (String field : candidates) {
-            int tempDist = Levenshtein.calculate(cleanName(field), cleanName(target));
-            if (tempDist < distance) {
-                closest = field;
-                distance = tempDist;
+    private static void readPrimaryKeys(DatabaseMetaData metaData, String catalog, String schema, String table, Map<String, Set<String>> primaryKeys)
+        throws SQLException {
+        try (ResultSet rsColumn = metaData.getPrimaryKeys(catalog, schema, table)) {
+            while (rsColumn.next()) {
+                primaryKeys.computeIfAbsent(rsColumn.getString("TABLE_NAME"), key -> new HashSet<>()).add(rsColumn.getString("COLUMN_NAME"));
             }
         }
-        return closest;
     }
 
-    private String cleanName(String str) {
-        return str.toLowerCase(Locale.ROOT).replace("_", "");
+    /**
+     * The schema of the information schema views: the database on MySQL, which has no schemas, the schema elsewhere.
+     */
+    static String currentSchema(Connection connection) throws SQLException {
+        String schema = connection.getSchema();
+        return schema != null ? schema : connection.getCatalog();
     }
-}
 
+    record Description(String columnName, String type, String size, String isNullable, Boolean isPrimaryKey, String isAutoincrement) {
+
+    }
+}
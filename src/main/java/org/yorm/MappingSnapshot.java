@@ -0,0 +1,113 @@
+package org.yorm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.yorm.MapBuilder.Description;
+import org.yorm.exception.YormException;
+
+/**
+ * Local copy of the database metadata behind every mapped record, so that a new instance can rebuild its mappings without
+ * asking the database. Each table keeps the fingerprint of its columns, to detect corrupted snapshots, and the fingerprint
+ * of its rows in the information schema, which a single query checks later for schema changes.
+ */
+record MappingSnapshot(Map<String, String> dbTables, Map<String, List<Description>> descriptions, Map<String, Long> schemaFingerprints) {
+
+    private static final int MAGIC = 0x59524d53;
+    private static final int VERSION = 2;
+
+    void write(Path path) throws YormException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(descriptions.size());
+            for (Map.Entry<String, List<Description>> entry : descriptions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(MapBuilder.fingerprint(entry.getValue()));
+                Long schemaFingerprint = schemaFingerprints.get(entry.getKey());
+                out.writeBoolean(schemaFingerprint != null);
+                if (schemaFingerprint != null) {
+                    out.writeLong(schemaFingerprint);
+                }
+                out.writeInt(entry.getValue().size());
+                for (Description description : entry.getValue()) {
+                    writeNullable(out, description.columnName());
+                    writeNullable(out, description.type());
+                    writeNullable(out, description.size());
+                    writeNullable(out, description.isNullable());
+                    out.writeBoolean(description.isPrimaryKey());
+                    writeNullable(out, description.isAutoincrement());
+                }
+            }
+            out.writeInt(dbTables.size());
+            for (Map.Entry<String, String> entry : dbTables.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new YormException("Error while writing mapping snapshot:" + path, e);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new YormException("Error while writing mapping snapshot:" + path, e);
+        }
+    }
+
+    static MappingSnapshot read(Path path) throws YormException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new YormException("Unsupported mapping snapshot:" + path);
+            }
+            Map<String, List<Description>> descriptions = new LinkedHashMap<>();
+            Map<String, Long> schemaFingerprints = new HashMap<>();
+            int tableCount = in.readInt();
+            for (int t = 0; t < tableCount; t++) {
+                String dbTable = in.readUTF();
+                long fingerprint = in.readLong();
+                if (in.readBoolean()) {
+                    schemaFingerprints.put(dbTable, in.readLong());
+                }
+                int columnCount = in.readInt();
+                List<Description> descriptionList = new ArrayList<>(columnCount);
+                for (int c = 0; c < columnCount; c++) {
+                    descriptionList.add(new Description(readNullable(in), readNullable(in), readNullable(in), readNullable(in), in.readBoolean(), readNullable(in)));
+                }
+                if (MapBuilder.fingerprint(descriptionList) != fingerprint) {
+                    throw new YormException("Corrupted mapping snapshot:" + path + " on table:" + dbTable);
+                }
+                descriptions.put(dbTable, descriptionList);
+            }
+            Map<String, String> dbTables = new LinkedHashMap<>();
+            int recordCount = in.readInt();
+            for (int r = 0; r < recordCount; r++) {
+                dbTables.put(in.readUTF(), in.readUTF());
+            }
+            return new MappingSnapshot(dbTables, descriptions, schemaFingerprints);
+        } catch (IOException e) {
+            throw new YormException("Error while reading mapping snapshot:" + path, e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String str) throws IOException {
+        out.writeBoolean(str != null);
+        if (str != null) {
+            out.writeUTF(str);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
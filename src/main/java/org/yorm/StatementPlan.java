@@ -0,0 +1,99 @@
+package org.yorm;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.yorm.db.Dialect;
+import org.yorm.exception.YormException;
+
+/**
+ * The SQL of one statement of a table, built once when the table is mapped, together with the tuples whose values are
+ * bound to its parameters, in order.
+ */
+public record StatementPlan(String sql, List<YormTuple> bindTuples) {
+
+    public StatementPlan {
+        bindTuples = List.copyOf(bindTuples);
+    }
+
+    static StatementPlan insert(String dbTable, List<YormTuple> tuples) {
+        String sql = "INSERT INTO " + dbTable + " (" + joinFieldNames(tuples, ", ") + ") VALUES (" + placeholders(tuples.size()) + ")";
+        return new StatementPlan(sql, tuples);
+    }
+
+    static StatementPlan update(String dbTable, List<YormTuple> tuples, List<YormTuple> keyTuples) {
+        String sql = "UPDATE " + dbTable + " SET " + joinFieldNames(tuples, " = ?, ") + " = ? WHERE " + joinFieldNames(keyTuples, " = ? AND ") + " = ?";
+        return new StatementPlan(sql, concat(tuples, keyTuples));
+    }
+
+    /**
+     * An insert of all the columns that updates the other columns of the row when its primary key already exists.
+     *
+     * @param rowAlias whether MySQL refers to the inserted row through an alias instead of the deprecated VALUES()
+     */
+    static StatementPlan upsert(String dbTable, List<YormTuple> tuples, List<YormTuple> keyTuples, Dialect dialect, boolean rowAlias)
+        throws YormException {
+        List<YormTuple> updatedTuples = tuples.stream().filter(tuple -> !keyTuples.contains(tuple)).toList();
+        StringBuilder sql = new StringBuilder(insert(dbTable, tuples).sql());
+        switch (dialect) {
+            case MYSQL -> {
+                // A column has to be set even when there is nothing to update, which leaves the row as it is
+                List<YormTuple> setTuples = updatedTuples.isEmpty() ? keyTuples : updatedTuples;
+                if (rowAlias) {
+                    sql.append(" AS new ON DUPLICATE KEY UPDATE ")
+                        .append(setTuples.stream().map(t -> t.dbFieldName() + " = new." + t.dbFieldName()).collect(Collectors.joining(", ")));
+                } else {
+                    sql.append(" ON DUPLICATE KEY UPDATE ")
+                        .append(setTuples.stream().map(t -> t.dbFieldName() + " = VALUES(" + t.dbFieldName() + ")").collect(Collectors.joining(", ")));
+                }
+            }
+            case POSTGRESQL -> {
+                sql.append(" ON CONFLICT (").append(joinFieldNames(keyTuples, ", ")).append(")");
+                if (updatedTuples.isEmpty()) {
+                    sql.append(" DO NOTHING");
+                } else {
+                    sql.append(" DO UPDATE SET ")
+                        .append(updatedTuples.stream().map(t -> t.dbFieldName() + " = EXCLUDED." + t.dbFieldName()).collect(Collectors.joining(", ")));
+                }
+            }
+            default -> throw new YormException("Upserts are only supported on MySQL and PostgreSQL, table:" + dbTable);
+        }
+        return new StatementPlan(sql.toString(), tuples);
+    }
+
+    static StatementPlan byId(String statement) {
+        return new StatementPlan(statement + " WHERE id = ?", List.of());
+    }
+
+    /**
+     * The SQL of an insert plan repeating its VALUES for several rows, whose values are bound one row after another.
+     */
+    public String withRows(int rows) {
+        return sql + (", (" + placeholders(bindTuples.size()) + ")").repeat(rows - 1);
+    }
+
+    /**
+     * Binds the values of {@code obj} starting at {@code paramIndex}, and returns the index of the next free parameter.
+     */
+    public int bind(PreparedStatement preparedStatement, int paramIndex, Record obj) throws SQLException, YormException {
+        for (YormTuple tuple : bindTuples) {
+            tuple.binder().bind(preparedStatement, paramIndex, obj);
+            paramIndex++;
+        }
+        return paramIndex;
+    }
+
+    static String placeholders(int count) {
+        return count == 0 ? "" : "?, ".repeat(count - 1) + "?";
+    }
+
+    private static String joinFieldNames(List<YormTuple> tuples, String delimiter) {
+        return tuples.stream().map(YormTuple::dbFieldName).collect(Collectors.joining(delimiter));
+    }
+
+    private static List<YormTuple> concat(List<YormTuple> first, List<YormTuple> second) {
+        return Stream.concat(first.stream(), second.stream()).toList();
+    }
+}
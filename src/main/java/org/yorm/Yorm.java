@@ -1,93 +1,253 @@
 package org.yorm;
 
-import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yorm.MapBuilder.Description;
+import org.yorm.db.Dialect;
 import org.yorm.db.QueryBuilder;
+import org.yorm.db.operations.QueryCopy;
+import org.yorm.db.operations.QueryFind;
+import org.yorm.db.operations.QuerySave;
 import org.yorm.db.operations.select.Select;
+import org.yorm.exception.UncheckedYormException;
 import org.yorm.exception.YormException;
+import org.yorm.util.CodecRegistry;
 
 public class Yorm {
 
-    private final Map<String, YormTable> map = new HashMap<>();
+    private static final Logger logger = LoggerFactory.getLogger(Yorm.class);
+    // Snapshots are checked with blocking JDBC calls, so each check gets a thread of its own instead of the common pool
+    private static final Executor SNAPSHOT_VALIDATION_EXECUTOR = validation -> {
+        Thread thread = new Thread(validation, "yorm-snapshot-validation");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private final Map<Class<? extends Record>, YormTable> tables = new ConcurrentHashMap<>();
+    private final CodecRegistry codecRegistry = new CodecRegistry();
     private final MapBuilder mapBuilder;
     private final QueryBuilder queryBuilder;
     private final DataSource ds;
+    private volatile int fetchSize = QueryFind.DEFAULT_FETCH_SIZE;
+    private volatile int insertChunkSize = QuerySave.DEFAULT_CHUNK_SIZE;
+    private volatile Dialect dialect;
+    private volatile boolean rowAlias;
 
     public Yorm(DataSource ds) {
         this.ds = ds;
-        this.mapBuilder = new MapBuilder(ds);
+        this.mapBuilder = new MapBuilder(ds, codecRegistry);
         this.queryBuilder = new QueryBuilder(ds);
     }
 
+    /**
+     * Teaches Yorm how to store a type it doesn't support out of the box, like a UUID in a VARCHAR column. Codecs should
+     * be registered before the records using them are first mapped, or followed by a {@link #refresh(Class)}.
+     */
+    public <J, D> void registerCodec(Class<J> javaType, Class<D> dbType, Function<? super J, ? extends D> encoder,
+        Function<? super D, ? extends J> decoder) {
+        codecRegistry.register(javaType, dbType, encoder, decoder);
+    }
+
     public <T extends Record> long save(T recordObj) throws YormException {
-        String objectName = getRecordName(recordObj);
-        YormTable yormTable = getTable(objectName, recordObj.getClass());
-        long result;
-        try {
-            result = queryBuilder.save(ds, recordObj, yormTable);
-        } catch (InvocationTargetException | IllegalAccessException e) {
-            throw new YormException("Error while saving record:" + recordObj, e);
-        }
-        return result;
+        YormTable yormTable = getTable(recordObj.getClass());
+        return queryBuilder.save(ds, recordObj, yormTable);
     }
 
     public <T extends Record> long insert(T recordObj) throws YormException {
-        String objectName = getRecordName(recordObj);
-        YormTable yormTable = getTable(objectName, recordObj.getClass());
+        YormTable yormTable = getTable(recordObj.getClass());
         return queryBuilder.insert(ds, recordObj, yormTable);
     }
 
-    public <T extends Record> void insert(List<T> recordListObj) throws YormException {
+    /**
+     * Inserts the records in chunks, in a single transaction.
+     *
+     * @return the ids of the records in the same order, generated by the database for the ones with an empty id
+     */
+    public <T extends Record> long[] insert(List<T> recordListObj) throws YormException {
         if (recordListObj.isEmpty()) {
-            return;
+            return new long[0];
         }
         T recordObj = recordListObj.get(0);
-        String objectName = getRecordName(recordObj);
-        YormTable yormTable = getTable(objectName, recordObj.getClass());
-        queryBuilder.bulkInsert(ds, recordListObj, yormTable);
+        YormTable yormTable = getTable(recordObj.getClass());
+        return queryBuilder.insertAll(ds, recordListObj, yormTable, insertChunkSize);
     }
 
     public <T extends Record> void update(T recordObj) throws YormException {
-        String objectName = getRecordName(recordObj);
-        YormTable yormTable = getTable(objectName, recordObj.getClass());
+        YormTable yormTable = getTable(recordObj.getClass());
         queryBuilder.update(ds, recordObj, yormTable);
     }
 
+    /**
+     * Updates only the columns that changed from {@code before} to {@code after}, in the row with the primary key of
+     * {@code before}. Nothing is sent to the database when both records are equal.
+     *
+     * @return whether a row was updated
+     */
+    public <T extends Record> boolean update(T before, T after) throws YormException {
+        YormTable yormTable = getTable(after.getClass());
+        return queryBuilder.update(ds, before, after, yormTable);
+    }
+
+    /**
+     * Updates the records in batches over a single connection, in a single transaction.
+     */
+    public <T extends Record> void update(List<T> recordListObj) throws YormException {
+        if (recordListObj.isEmpty()) {
+            return;
+        }
+        YormTable yormTable = getTable(recordListObj.get(0).getClass());
+        queryBuilder.updateAll(ds, recordListObj, yormTable, insertChunkSize);
+    }
+
+    /**
+     * Saves the records like {@link #save(Record)} does, inserting the ones with an empty id and updating the rest, in
+     * batches over a single connection, in a single transaction.
+     *
+     * @return the ids of the records in the same order
+     */
+    public <T extends Record> long[] saveAll(List<T> recordListObj) throws YormException {
+        if (recordListObj.isEmpty()) {
+            return new long[0];
+        }
+        YormTable yormTable = getTable(recordListObj.get(0).getClass());
+        return queryBuilder.saveAll(ds, recordListObj, yormTable, insertChunkSize);
+    }
+
+    /**
+     * Inserts the record, or updates the row that already has its primary key, with a single statement. Records with an
+     * empty auto-increment id are just inserted. Only available on MySQL and PostgreSQL.
+     *
+     * @return the id of the record, generated by the database when it was empty
+     */
+    public <T extends Record> long upsert(T recordObj) throws YormException {
+        YormTable yormTable = getTable(recordObj.getClass());
+        Dialect currentDialect = dialect();
+        return queryBuilder.upsert(ds, recordObj, yormTable, currentDialect, rowAlias);
+    }
+
+    /**
+     * Upserts the records like {@link #upsert(Record)} does, in batches over a single connection, in a single transaction.
+     *
+     * @return the ids of the records in the same order
+     */
+    public <T extends Record> long[] upsertAll(List<T> recordListObj) throws YormException {
+        if (recordListObj.isEmpty()) {
+            return new long[0];
+        }
+        YormTable yormTable = getTable(recordListObj.get(0).getClass());
+        Dialect currentDialect = dialect();
+        return queryBuilder.upsertAll(ds, recordListObj, yormTable, insertChunkSize, currentDialect, rowAlias);
+    }
+
+    /**
+     * Loads the records with the COPY command of PostgreSQL, much faster than inserts for large amounts of rows. When the
+     * first record has an empty id the database generates the ids of all of them. Needs the PostgreSQL driver.
+     *
+     * @return how many rows were copied
+     */
+    public <T extends Record> long copyIn(List<T> recordListObj) throws YormException {
+        return copyIn(recordListObj.iterator());
+    }
+
+    /**
+     * Like {@link #copyIn(List)}, reading the records from the stream as they are sent, so they don't need to fit in memory.
+     */
+    public <T extends Record> long copyIn(Stream<T> records) throws YormException {
+        return copyIn(records.iterator());
+    }
+
+    private <T extends Record> long copyIn(Iterator<T> records) throws YormException {
+        if (!records.hasNext()) {
+            return 0;
+        }
+        if (dialect() != Dialect.POSTGRESQL) {
+            throw new YormException("COPY is only supported on PostgreSQL");
+        }
+        T first = records.next();
+        YormTable yormTable = getTable(first.getClass());
+        return QueryCopy.copyIn(ds, yormTable, first, records);
+    }
+
+    /**
+     * Reads all the records of the table with the binary COPY format of PostgreSQL, which is cheaper to decode than a result
+     * set, for exports of whole tables. Timestamps with a time zone are converted to the one of the JVM, like the rest of the
+     * queries do. The stream holds a connection and must be closed, ideally with a try-with-resources. Needs the PostgreSQL
+     * driver.
+     */
+    public <T extends Record> Stream<T> copyOut(Class<T> referenceObject) throws YormException {
+        if (dialect() != Dialect.POSTGRESQL) {
+            throw new YormException("COPY is only supported on PostgreSQL");
+        }
+        YormTable yormTable = getTable(referenceObject);
+        return QueryCopy.copyOut(ds, yormTable);
+    }
+
     public <T extends Record> T find(Class<T> recordObject, long id) throws YormException {
-        String objectName = getClassName(recordObject);
-        YormTable yormTable = getTable(objectName, recordObject);
+        YormTable yormTable = getTable(recordObject);
         return queryBuilder.find(ds, yormTable, id);
     }
 
+    /**
+     * Finds the records with the given ids in a few statements, instead of one per id.
+     *
+     * @return the records found, by id. Ids without a record are left out
+     */
+    public <T extends Record> Map<Long, T> findByIds(Class<T> recordObject, long[] ids) throws YormException {
+        if (ids.length == 0) {
+            return new HashMap<>();
+        }
+        YormTable yormTable = getTable(recordObject);
+        return queryBuilder.findByIds(ds, yormTable, ids, dialect());
+    }
+
     public <T extends Record> List<T> find(Class<T> referenceObject, Record filterObject) throws YormException {
-        String filterObjectName = getRecordName(filterObject);
-        String referenceObjectName = getClassName(referenceObject);
-        YormTable yormTableFilter = getTable(filterObjectName, filterObject.getClass());
-        YormTable yormTableObject = getTable(referenceObjectName, referenceObject);
+        YormTable yormTableFilter = getTable(filterObject.getClass());
+        YormTable yormTableObject = getTable(referenceObject);
         List<T> result;
         try {
             result = queryBuilder.find(ds, filterObject, yormTableFilter, yormTableObject);
-        } catch (InvocationTargetException | IllegalAccessException | YormException e) {
+        } catch (YormException e) {
             throw new YormException("Error while finding records with reference:" + referenceObject + " and filter:" + filterObject, e);
         }
         return result;
     }
 
     public <T extends Record> List<T> find(Class<T> referenceObject) throws YormException {
-        String referenceObjectName = getClassName(referenceObject);
-        YormTable yormTable = getTable(referenceObjectName, referenceObject);
+        YormTable yormTable = getTable(referenceObject);
         return queryBuilder.find(ds, yormTable);
     }
 
+    /**
+     * Reads all the records of the table lazily, one row at a time, so that tables that don't fit in memory can be
+     * processed. The stream holds a connection and must be closed, ideally with a try-with-resources.
+     */
+    public <T extends Record> Stream<T> stream(Class<T> referenceObject) throws YormException {
+        YormTable yormTable = getTable(referenceObject);
+        return QueryFind.streamAll(ds, yormTable, fetchSize);
+    }
+
     public <T extends Record> Select<T> from(Class<T> referenceObject) throws YormException {
-        String referenceObjectName = getClassName(referenceObject);
-        YormTable yormTable = getTable(referenceObjectName, referenceObject);
-        return new Select<>(ds, yormTable);
+        YormTable yormTable = getTable(referenceObject);
+        return new Select<>(ds, yormTable, fetchSize, dialect(), mapBuilder);
     }
 
     public <T extends Record> List<T> find(List<T> list) throws YormException {
@@ -96,38 +256,200 @@ public class Yorm {
             return result;
         }
         Record recordObj = list.get(0);
-        String objectName = getRecordName(recordObj);
-        YormTable yormTable = getTable(objectName, recordObj.getClass());
+        YormTable yormTable = getTable(recordObj.getClass());
         try {
             result = queryBuilder.find(ds, list, yormTable);
-        } catch (InvocationTargetException | IllegalAccessException | YormException e) {
+        } catch (YormException e) {
             throw new YormException("Error while finding records with list", e);
         }
         return result;
     }
 
+    public <T extends Record> boolean delete(Class<T> recordObject, long id) throws YormException {
+        YormTable yormTable = getTable(recordObject);
+        return queryBuilder.delete(ds, yormTable, id);
+    }
+
+    /**
+     * Deletes the records with the given ids in a few statements, instead of one per id.
+     *
+     * @return how many records were deleted
+     */
+    public <T extends Record> int delete(Class<T> recordObject, long[] ids) throws YormException {
+        if (ids.length == 0) {
+            return 0;
+        }
+        YormTable yormTable = getTable(recordObject);
+        return queryBuilder.delete(ds, yormTable, ids, dialect());
+    }
 
-    private <T extends Record> String getClassName(Class<T> clazz) {
-        return clazz.getSimpleName().toLowerCase(Locale.ROOT);
+    private Dialect dialect() throws YormException {
+        Dialect current = dialect;
+        if (current == null) {
+            try (Connection connection = ds.getConnection()) {
+                current = Dialect.of(connection);
+                // Written before the dialect, which tells it was detected
+                rowAlias = Dialect.hasRowAlias(connection);
+            } catch (SQLException e) {
+                throw new YormException("Error while detecting the database", e);
+            }
+            dialect = current;
+        }
+        return current;
     }
 
-    private String getRecordName(Record recordObj) {
-        return recordObj.getClass().getSimpleName().toLowerCase(Locale.ROOT);
+    /**
+     * How many rows streams fetch from the database at a time. MySQL always streams one row at a time.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
     }
 
-    public <T extends Record> boolean delete(Class<T> recordObject, long id) throws YormException {
-        String objectName = getClassName(recordObject);
-        YormTable yormTable = getTable(objectName, recordObject);
-        return queryBuilder.delete(ds, yormTable, id);
+    /**
+     * How many records a list insert sends in each statement, or a list update in each batch, at most. The limit of
+     * parameters per statement always applies.
+     */
+    public void setInsertChunkSize(int insertChunkSize) {
+        this.insertChunkSize = insertChunkSize;
+    }
+
+    /**
+     * Maps all the given records with a single pass over the database metadata, so that the first queries don't pay for it.
+     */
+    @SafeVarargs
+    public final void preload(Class<? extends Record>... recordClasses) throws YormException {
+        List<Class<? extends Record>> missing = Arrays.stream(recordClasses)
+            .distinct()
+            .filter(recordClass -> !tables.containsKey(recordClass))
+            .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        mapBuilder.buildMaps(missing).forEach(tables::putIfAbsent);
+    }
+
+    /**
+     * Drops the mapping of the record, which will be built again the next time the record is used.
+     */
+    public void invalidate(Class<? extends Record> recordClass) {
+        tables.remove(recordClass);
+    }
+
+    public void invalidateAll() {
+        tables.clear();
+    }
+
+    /**
+     * Maps the record again and swaps the new mapping in. Queries already running keep using the previous one.
+     */
+    public void refresh(Class<? extends Record> recordClass) throws YormException {
+        tables.put(recordClass, mapBuilder.buildMap(recordClass));
+    }
+
+    public void refreshAll() throws YormException {
+        List<Class<? extends Record>> recordClasses = List.copyOf(tables.keySet());
+        if (!recordClasses.isEmpty()) {
+            tables.putAll(mapBuilder.buildMaps(recordClasses));
+        }
+    }
+
+    /**
+     * Writes the database metadata behind the records mapped so far to a local file, to be used by {@link #loadSnapshot(Path)}.
+     */
+    public void saveSnapshot(Path path) throws YormException {
+        Map<String, String> dbTables = new LinkedHashMap<>();
+        tables.forEach((recordClass, yormTable) -> dbTables.put(recordClass.getName(), yormTable.dbTable()));
+        Set<String> dbTableNames = new LinkedHashSet<>(dbTables.values());
+        Map<String, List<Description>> descriptions = mapBuilder.describe(dbTableNames);
+        new MappingSnapshot(dbTables, descriptions, mapBuilder.schemaFingerprints(dbTableNames)).write(path);
+    }
+
+    /**
+     * Maps the records found in a snapshot written by {@link #saveSnapshot(Path)} without querying the database. The returned
+     * future completes once the snapshot has been checked against the current schema in the background, and any record whose
+     * table has changed since has been mapped again.
+     */
+    public CompletableFuture<Void> loadSnapshot(Path path) throws YormException {
+        return loadSnapshot(path, SNAPSHOT_VALIDATION_EXECUTOR);
+    }
+
+    /**
+     * Like {@link #loadSnapshot(Path)}, checking the snapshot on the given executor, whose threads may block on the database.
+     */
+    public CompletableFuture<Void> loadSnapshot(Path path, Executor executor) throws YormException {
+        MappingSnapshot snapshot = MappingSnapshot.read(path);
+        Map<Class<? extends Record>, String> dbTables = new HashMap<>();
+        for (Map.Entry<String, String> entry : snapshot.dbTables().entrySet()) {
+            Class<? extends Record> recordClass = loadRecordClass(entry.getKey());
+            if (recordClass != null) {
+                dbTables.put(recordClass, entry.getValue());
+            }
+        }
+        mapBuilder.buildMaps(dbTables, snapshot.descriptions()).forEach(tables::putIfAbsent);
+        return CompletableFuture.runAsync(() -> {
+            try {
+                validateSnapshot(dbTables, snapshot);
+            } catch (YormException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Fingerprints the tables with a single query first, and only describes again the ones whose fingerprint changed, or
+     * couldn't be computed, to find the records that have to be mapped again.
+     */
+    private void validateSnapshot(Map<Class<? extends Record>, String> dbTables, MappingSnapshot snapshot) throws YormException {
+        Map<String, List<Description>> descriptions = snapshot.descriptions();
+        Map<String, Long> currentFingerprints = mapBuilder.schemaFingerprints(descriptions.keySet());
+        List<String> changedTables = descriptions.keySet().stream()
+            .filter(dbTable -> currentFingerprints.get(dbTable) == null || !currentFingerprints.get(dbTable).equals(snapshot.schemaFingerprints().get(dbTable)))
+            .toList();
+        if (changedTables.isEmpty()) {
+            return;
+        }
+        Map<String, List<Description>> currentDescriptions = mapBuilder.describe(changedTables);
+        List<Class<? extends Record>> staleRecords = dbTables.entrySet().stream()
+            .filter(entry -> changedTables.contains(entry.getValue()))
+            .filter(entry -> MapBuilder.fingerprint(currentDescriptions.get(entry.getValue())) != MapBuilder.fingerprint(descriptions.get(entry.getValue())))
+            .map(Map.Entry::getKey)
+            .toList();
+        if (!staleRecords.isEmpty()) {
+            logger.info("Mapping snapshot is outdated for records:{}, mapping them again", staleRecords);
+            tables.putAll(mapBuilder.buildMaps(staleRecords));
+        }
     }
 
-    private <T extends Record> YormTable getTable(String objectName, Class<T> recordObject) throws YormException {
-        YormTable yormTable = map.get(objectName);
-        if (yormTable == null) {
-            yormTable = mapBuilder.buildMap(recordObject);
+    private Class<? extends Record> loadRecordClass(String className) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            Class<?> clazz = Class.forName(className, false, classLoader != null ? classLoader : Yorm.class.getClassLoader());
+            return Record.class.isAssignableFrom(clazz) ? clazz.asSubclass(Record.class) : null;
+        } catch (ClassNotFoundException e) {
+            logger.debug("Record:{} from mapping snapshot not found, skipping it", className);
+            return null;
+        }
+    }
+
+    private YormTable getTable(Class<? extends Record> recordClass) throws YormException {
+        YormTable yormTable = tables.get(recordClass);
+        if (yormTable != null) {
+            return yormTable;
+        }
+        try {
+            return tables.computeIfAbsent(recordClass, this::buildTable);
+        } catch (UncheckedYormException e) {
+            throw e.getCause();
+        }
+    }
+
+    private YormTable buildTable(Class<? extends Record> recordClass) {
+        try {
+            return mapBuilder.buildMap(recordClass);
+        } catch (YormException e) {
+            // computeIfAbsent only lets unchecked exceptions through
+            throw new UncheckedYormException(e);
         }
-        map.put(objectName, yormTable);
-        return yormTable;
     }
 
 }
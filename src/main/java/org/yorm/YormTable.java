@@ -1,42 +1,237 @@
 package org.yorm;
 
 import java.lang.reflect.Constructor;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.yorm.db.Dialect;
+import org.yorm.db.operations.FilterPredicates;
+import org.yorm.db.operations.select.CompiledSelect;
+import org.yorm.db.operations.select.SelectShape;
+import org.yorm.exception.UncheckedYormException;
 import org.yorm.exception.YormException;
+import org.yorm.util.RecordMaterializer;
 
-public record YormTable(
-    String dbTable,
-    List<YormTuple> tuples,
-    Constructor<Record> constructor,
-    String concatenatedFieldNames,
-    String selectAllFromTable,
-    boolean hasPrimaryKey
-) {
+/**
+ * The mapping of a record to a table, with the statements built from it. Statements that depend on how the table is
+ * queried are built on first use and cached here, outside of what makes two mappings equal.
+ */
+public final class YormTable {
+
+    // Bounds the statements cached per table, since shapes like the ones of record filters depend on the values used
+    static final int MAX_CACHED_STATEMENTS = 256;
+
+    private final String dbTable;
+    private final List<YormTuple> tuples;
+    private final Constructor<Record> constructor;
+    private final String concatenatedFieldNames;
+    private final String selectAllFromTable;
+    private final boolean hasPrimaryKey;
+    private final RecordMaterializer materializer;
+    private final List<YormTuple> keyTuples;
+    private final YormTuple autoIncrementKey;
+    private final StatementPlan insertPlan;
+    private final StatementPlan forceInsertPlan;
+    private final StatementPlan updatePlan;
+    private final StatementPlan deletePlan;
+    private final StatementPlan findByIdPlan;
+    private final Map<String, YormTuple> tuplesByDbFieldName;
+    private final Map<String, YormTuple> tuplesByObjectFieldName;
+    private final Map<SelectShape, CompiledSelect> compiledSelects = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Record>, YormTable> projections = new ConcurrentHashMap<>();
+    private final Map<UpsertSyntax, StatementPlan> upsertPlans = new ConcurrentHashMap<>();
+    private final Map<BitSet, StatementPlan> partialUpdatePlans = new ConcurrentHashMap<>();
 
     public YormTable(String dbTable, List<YormTuple> tuples, Constructor<Record> constructor) throws YormException {
-        this(
-            dbTable,
-            tuples,
-            constructor,
-            tuples.stream().map(YormTuple::dbFieldName).collect(Collectors.joining(", ")),
-            tuples.stream().map(YormTuple::dbFieldName).collect(Collectors.joining(", ", "SELECT ", " FROM " + dbTable)),
-            tuples.stream().anyMatch(YormTuple::isPrimaryKey)
-        );
+        List<YormTuple> keyTuples = tuples.stream().filter(FilterPredicates.filterKeepKeys()).toList();
+        this.dbTable = dbTable;
+        this.tuples = List.copyOf(tuples);
+        this.constructor = constructor;
+        this.concatenatedFieldNames = tuples.stream().map(YormTuple::dbFieldName).collect(Collectors.joining(", "));
+        this.selectAllFromTable = tuples.stream().map(YormTuple::dbFieldName).collect(Collectors.joining(", ", "SELECT ", " FROM " + dbTable));
+        this.hasPrimaryKey = tuples.stream().anyMatch(YormTuple::isPrimaryKey);
+        this.materializer = RecordMaterializer.of(constructor, tuples);
+        this.keyTuples = keyTuples;
+        this.autoIncrementKey = tuples.stream().filter(FilterPredicates.filterAutoIncrementKey()).findFirst().orElse(null);
+        this.insertPlan = StatementPlan.insert(dbTable, tuples.stream().filter(FilterPredicates.filterOutPrimaryKeys()).toList());
+        this.forceInsertPlan = StatementPlan.insert(dbTable, tuples);
+        this.updatePlan = StatementPlan.update(dbTable, tuples, keyTuples);
+        this.deletePlan = StatementPlan.byId("DELETE FROM " + dbTable);
+        this.findByIdPlan = StatementPlan.byId(selectAllFromTable);
+        this.tuplesByDbFieldName = index(tuples, YormTuple::dbFieldName);
+        this.tuplesByObjectFieldName = index(tuples, YormTuple::objectFieldName);
+    }
+
+    public String dbTable() {
+        return dbTable;
+    }
+
+    public List<YormTuple> tuples() {
+        return tuples;
+    }
+
+    public Constructor<Record> constructor() {
+        return constructor;
+    }
+
+    public String concatenatedFieldNames() {
+        return concatenatedFieldNames;
+    }
+
+    public String selectAllFromTable() {
+        return selectAllFromTable;
+    }
+
+    public boolean hasPrimaryKey() {
+        return hasPrimaryKey;
+    }
+
+    public RecordMaterializer materializer() {
+        return materializer;
+    }
+
+    public List<YormTuple> keyTuples() {
+        return keyTuples;
+    }
+
+    public YormTuple autoIncrementKey() {
+        return autoIncrementKey;
+    }
+
+    public StatementPlan insertPlan() {
+        return insertPlan;
+    }
+
+    public StatementPlan forceInsertPlan() {
+        return forceInsertPlan;
+    }
+
+    public StatementPlan updatePlan() {
+        return updatePlan;
+    }
+
+    public StatementPlan deletePlan() {
+        return deletePlan;
+    }
+
+    public StatementPlan findByIdPlan() {
+        return findByIdPlan;
+    }
+
+    public Map<String, YormTuple> tuplesByDbFieldName() {
+        return tuplesByDbFieldName;
+    }
+
+    public Map<String, YormTuple> tuplesByObjectFieldName() {
+        return tuplesByObjectFieldName;
     }
 
     public YormTuple getTupleWithDBFieldName(String fieldName) throws YormException {
-        return this.tuples().stream().filter(tuple -> tuple.dbFieldName().equals(fieldName))
-                             .findFirst()
-                             .orElseThrow(() -> new YormException("Field not found: " + fieldName));
+        YormTuple tuple = tuplesByDbFieldName.get(fieldName);
+        if (tuple == null) {
+            throw new YormException("Field not found: " + fieldName);
+        }
+        return tuple;
     }
 
     public YormTuple getTupleWithObjectFieldName(String fieldName) throws YormException {
-        return this.tuples().stream().filter(tuple -> tuple.objectFieldName().equals(fieldName))
-                   .findFirst()
-                   .orElseThrow(() -> new YormException("Field not found: " + fieldName));
+        YormTuple tuple = tuplesByObjectFieldName.get(fieldName);
+        if (tuple == null) {
+            throw new YormException("Field not found: " + fieldName);
+        }
+        return tuple;
+    }
+
+    public CompiledSelect compiledSelect(SelectShape shape) {
+        CompiledSelect compiledSelect = compiledSelects.get(shape);
+        if (compiledSelect == null) {
+            if (compiledSelects.size() >= MAX_CACHED_STATEMENTS) {
+                return CompiledSelect.compile(this, shape);
+            }
+            compiledSelect = compiledSelects.computeIfAbsent(shape, key -> CompiledSelect.compile(this, key));
+        }
+        return compiledSelect;
     }
 
+    /**
+     * An update of the tuples at the given positions only, built the first time each set of columns is asked for.
+     */
+    public StatementPlan updatePlan(BitSet changedTuples) {
+        StatementPlan plan = partialUpdatePlans.get(changedTuples);
+        if (plan == null) {
+            if (partialUpdatePlans.size() >= MAX_CACHED_STATEMENTS) {
+                return StatementPlan.update(dbTable, changedTuples.stream().mapToObj(tuples::get).toList(), keyTuples);
+            }
+            BitSet key = (BitSet) changedTuples.clone();
+            plan = partialUpdatePlans.computeIfAbsent(key, k -> StatementPlan.update(dbTable, k.stream().mapToObj(tuples::get).toList(), keyTuples));
+        }
+        return plan;
+    }
 
+    public StatementPlan upsertPlan(Dialect dialect, boolean rowAlias) throws YormException {
+        UpsertSyntax syntax = new UpsertSyntax(dialect, rowAlias);
+        StatementPlan upsertPlan = upsertPlans.get(syntax);
+        if (upsertPlan != null) {
+            return upsertPlan;
+        }
+        if (keyTuples.isEmpty()) {
+            throw new YormException("Can't upsert records, table:" + dbTable + " has no primary key");
+        }
+        upsertPlan = StatementPlan.upsert(dbTable, tuples, keyTuples, dialect, rowAlias);
+        upsertPlans.putIfAbsent(syntax, upsertPlan);
+        return upsertPlan;
+    }
+
+    /**
+     * The mapping of a narrower record over some columns of this table, built the first time it's asked for.
+     */
+    public YormTable projection(Class<? extends Record> projectionClass, MapBuilder mapBuilder) throws YormException {
+        YormTable projection = projections.get(projectionClass);
+        if (projection != null) {
+            return projection;
+        }
+        try {
+            return projections.computeIfAbsent(projectionClass, key -> {
+                try {
+                    return mapBuilder.buildProjection(this, key);
+                } catch (YormException e) {
+                    throw new UncheckedYormException(e);
+                }
+            });
+        } catch (UncheckedYormException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Map<String, YormTuple> index(List<YormTuple> tuples, Function<YormTuple, String> name) {
+        Map<String, YormTuple> index = new HashMap<>();
+        for (YormTuple tuple : tuples) {
+            index.putIfAbsent(name.apply(tuple), tuple);
+        }
+        return Map.copyOf(index);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof YormTable other && dbTable.equals(other.dbTable) && tuples.equals(other.tuples) && constructor.equals(other.constructor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dbTable, tuples, constructor);
+    }
+
+    @Override
+    public String toString() {
+        return "YormTable[dbTable=" + dbTable + ", tuples=" + tuples + ", constructor=" + constructor + "]";
+    }
+
+    private record UpsertSyntax(Dialect dialect, boolean rowAlias) {
+    }
 }
@@ -2,6 +2,8 @@ package org.yorm;
 
 import java.lang.reflect.Method;
 
+import org.yorm.util.Accessor;
+import org.yorm.util.ColumnBinder;
 import org.yorm.util.DbType;
 import org.yorm.util.RowRecordConverter;
 
@@ -14,7 +16,9 @@ public record YormTuple(
         boolean isPrimaryKey,
         boolean isAutoincrement,
         Method method,
+        Accessor accessor,
         RowRecordConverter.Converter<?> serializer,
-        RowRecordConverter.Converter<?> deserializer
+        RowRecordConverter.Converter<?> deserializer,
+        ColumnBinder binder
 ) {
 }
@@ -0,0 +1,116 @@
+package org.yorm.db;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * The databases whose drivers need, or allow, something different from plain JDBC.
+ */
+public enum Dialect {
+    MYSQL,
+    POSTGRESQL,
+    OTHER;
+
+    public static Dialect of(Connection connection) throws SQLException {
+        String productName = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        if (productName.contains("mysql") || productName.contains("mariadb")) {
+            return MYSQL;
+        }
+        if (productName.contains("postgresql")) {
+            return POSTGRESQL;
+        }
+        return OTHER;
+    }
+
+    /**
+     * MySQL 8.0.19 can name the row being inserted, {@code INSERT ... AS new ON DUPLICATE KEY UPDATE c = new.c}, which
+     * replaces {@code VALUES(c)}, deprecated since 8.0.20. Older servers and MariaDB only understand {@code VALUES(c)}.
+     */
+    public static boolean hasRowAlias(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String version = metaData.getDatabaseProductVersion();
+        if (!metaData.getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql") || version.toLowerCase(Locale.ROOT).contains("mariadb")) {
+            return false;
+        }
+        int major = metaData.getDatabaseMajorVersion();
+        int minor = metaData.getDatabaseMinorVersion();
+        if (major != 8 || minor != 0) {
+            return major >= 8;
+        }
+        // Only the product version has the patch number, like 8.0.19-log
+        String[] numbers = version.split("\\D+");
+        return numbers.length > 2 && Integer.parseInt(numbers[2]) >= 19;
+    }
+
+    /**
+     * The fetch size that makes the driver read the rows lazily instead of loading them all when the query is executed.
+     * MySQL Connector/J only streams with {@link Integer#MIN_VALUE}, one row at a time.
+     */
+    public int streamingFetchSize(int fetchSize) {
+        return this == MYSQL ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    /**
+     * PostgreSQL can compare a column with a single array parameter, {@code id = ANY(?)}, whatever the number of ids.
+     */
+    public boolean bindsIdArrays() {
+        return this == POSTGRESQL;
+    }
+
+    /**
+     * PostgreSQL compares row values, {@code (a, b) > (?, ?)}, and seeks them with an index on both columns. MySQL doesn't
+     * use the index for them, so they are written as {@code a > ? OR (a = ? AND b > ?)} everywhere else.
+     */
+    public boolean comparesRowValues() {
+        return this == POSTGRESQL;
+    }
+
+    /**
+     * PostgreSQL ignores the fetch size, and reads the whole result, unless the query runs inside a transaction.
+     */
+    public boolean streamsInTransaction() {
+        return this == POSTGRESQL;
+    }
+
+    /**
+     * Appends the clauses limiting the rows of a query, with a parameter for the limit and one for the offset, which are
+     * bound in the order given by {@link #bindsOffsetFirst()}.
+     */
+    public void appendPaging(StringBuilder query, boolean limited, boolean offset) {
+        switch (this) {
+            case MYSQL -> {
+                if (limited) {
+                    query.append(" LIMIT ?");
+                } else if (offset) {
+                    // MySQL has no OFFSET without LIMIT, its docs suggest the largest possible one
+                    query.append(" LIMIT 18446744073709551615");
+                }
+                if (offset) {
+                    query.append(" OFFSET ?");
+                }
+            }
+            case POSTGRESQL -> {
+                if (limited) {
+                    query.append(" LIMIT ?");
+                }
+                if (offset) {
+                    query.append(" OFFSET ?");
+                }
+            }
+            case OTHER -> {
+                if (offset) {
+                    query.append(" OFFSET ? ROWS");
+                }
+                if (limited) {
+                    query.append(" FETCH FIRST ? ROWS ONLY");
+                }
+            }
+        }
+    }
+
+    public boolean bindsOffsetFirst() {
+        return this == OTHER;
+    }
+}
@@ -1,9 +1,12 @@
 package org.yorm.db;
 
+import org.yorm.YormTuple;
 import org.yorm.db.operations.operators.ComparisonOperator;
 import org.yorm.db.operations.operators.WhereOperator;
-import org.yorm.util.DbType;
 
-public record FilteringFieldValue(String fieldName, DbType dbType, Object value, ComparisonOperator comparisonOperator, WhereOperator whereOperator) {
+public record FilteringFieldValue(YormTuple tuple, Object value, ComparisonOperator comparisonOperator, WhereOperator whereOperator) {
 
+    public String fieldName() {
+        return tuple.dbFieldName();
+    }
 }
@@ -1,9 +1,8 @@
 package org.yorm.db;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.sql.DataSource;
 import org.yorm.YormTable;
@@ -33,18 +32,38 @@ public class QueryBuilder {
         QuerySave.update(ds, obj, yormTable);
     }
 
-    public <T extends Record> void bulkInsert(DataSource ds, List<T> list, YormTable yormTable) throws YormException {
-        QuerySave.bulkInsert(ds, list, yormTable);
+    public <T extends Record> long[] insertAll(DataSource ds, List<T> list, YormTable yormTable, int chunkSize) throws YormException {
+        return QuerySave.insertAll(ds, list, yormTable, chunkSize);
     }
 
-    public long save(DataSource ds, Record obj, YormTable yormTable) throws InvocationTargetException, IllegalAccessException, YormException {
-        Optional<YormTuple> idField = yormTable.tuples().stream().filter(FilterPredicates.filterAutoIncrementKey()).findFirst();
+    public boolean update(DataSource ds, Record before, Record after, YormTable yormTable) throws YormException {
+        return QuerySave.updateChanges(ds, before, after, yormTable);
+    }
+
+    public <T extends Record> void updateAll(DataSource ds, List<T> list, YormTable yormTable, int chunkSize) throws YormException {
+        QuerySave.updateAll(ds, list, yormTable, chunkSize);
+    }
+
+    public <T extends Record> long[] saveAll(DataSource ds, List<T> list, YormTable yormTable, int chunkSize) throws YormException {
+        return QuerySave.saveAll(ds, list, yormTable, chunkSize);
+    }
+
+    public long upsert(DataSource ds, Record obj, YormTable yormTable, Dialect dialect, boolean rowAlias) throws YormException {
+        return QuerySave.upsert(ds, obj, yormTable, dialect, rowAlias);
+    }
+
+    public <T extends Record> long[] upsertAll(DataSource ds, List<T> list, YormTable yormTable, int chunkSize, Dialect dialect,
+        boolean rowAlias) throws YormException {
+        return QuerySave.upsertAll(ds, list, yormTable, chunkSize, dialect, rowAlias);
+    }
+
+    public long save(DataSource ds, Record obj, YormTable yormTable) throws YormException {
+        YormTuple idField = yormTable.autoIncrementKey();
         long idInsert = 0;
-        if (idField.isEmpty()) {
+        if (idField == null) {
             idInsert = QuerySave.forceInsert(ds, obj, yormTable);
         } else {
-            YormTuple yormTuple = idField.get();
-            if (emptyId(obj, yormTuple)) {
+            if (QuerySave.hasEmptyId(obj, idField)) {
                 idInsert = QuerySave.insert(ds, obj, yormTable);
             } else {
                 QuerySave.update(ds, obj, yormTable);
@@ -53,30 +72,24 @@ public class QueryBuilder {
         return idInsert;
     }
 
-    private boolean emptyId(Record obj, YormTuple yormTuple) throws InvocationTargetException, IllegalAccessException {
-        Object idObject = yormTuple.method().invoke(obj);
-        if (idObject == null) {
-            return true;
-        }
-        if (yormTuple.method().getReturnType().getName().equalsIgnoreCase("long")) {
-            return (long) idObject == 0;
-        }
-        if (yormTuple.method().getReturnType().getName().equalsIgnoreCase("int")) {
-            return (int) idObject == 0;
-        }
-        return false;
-    }
-
     public boolean delete(DataSource ds, YormTable yormTable, long id) throws YormException {
         return QueryDelete.delete(ds, yormTable, id);
     }
 
+    public int delete(DataSource ds, YormTable yormTable, long[] ids, Dialect dialect) throws YormException {
+        return QueryDelete.deleteAll(ds, yormTable, ids, dialect);
+    }
+
+    public <T extends Record> Map<Long, T> findByIds(DataSource ds, YormTable yormTable, long[] ids, Dialect dialect) throws YormException {
+        return QueryFind.findByIds(ds, yormTable, ids, dialect);
+    }
+
     public <T extends Record> T find(DataSource ds, YormTable yormTable, long id) throws YormException {
         return QueryFind.findById(ds, yormTable, id);
     }
 
     public <T extends Record> List<T> find(DataSource ds, Record filterObject, YormTable yormTableFilter, YormTable yormTableObject)
-        throws InvocationTargetException, IllegalAccessException, YormException {
+        throws YormException {
         String foreignKeyFilter = yormTableFilter.dbTable() + "_id";
         String foreignKey = yormTableFilter.dbTable() + "_id";
         Optional<YormTuple> yormTuple = yormTableObject.tuples().stream().filter(t -> t.dbFieldName().equalsIgnoreCase(foreignKeyFilter)).findFirst();
@@ -92,7 +105,7 @@ public class QueryBuilder {
         if (optionalFilteringTupleId.isEmpty()) {
             return new ArrayList<>();
         }
-        int id = (int) optionalFilteringTupleId.get().method().invoke(filterObject);
+        int id = (int) optionalFilteringTupleId.get().accessor().get(filterObject);
         return QueryFind.findByForeignId(ds, yormTableObject, foreignKey, id);
     }
 
@@ -101,24 +114,22 @@ public class QueryBuilder {
     }
 
     public <T extends Record> List<T> find(DataSource ds, List<T> list, YormTable yormTable, WhereOperator whereOperator)
-        throws InvocationTargetException, IllegalAccessException, YormException {
+        throws YormException {
         List<FilteringFieldValue> filteringFieldValueList = getFieldValues(list, yormTable, whereOperator);
         return QueryFind.findFiltering(ds, yormTable, filteringFieldValueList);
     }
 
-    public <T extends Record> List<T> find(DataSource ds, List<T> list, YormTable yormTable) throws InvocationTargetException, IllegalAccessException, YormException {
+    public <T extends Record> List<T> find(DataSource ds, List<T> list, YormTable yormTable) throws YormException {
         List<FilteringFieldValue> filteringFieldValueList = getFieldValues(list, yormTable, WhereOperator.OR);
         return QueryFind.findFiltering(ds, yormTable, filteringFieldValueList);
     }
 
-    private <T extends Record> List<FilteringFieldValue> getFieldValues(List<T> list, YormTable yormTable, WhereOperator whereOperator)
-        throws IllegalAccessException, InvocationTargetException {
+    private <T extends Record> List<FilteringFieldValue> getFieldValues(List<T> list, YormTable yormTable, WhereOperator whereOperator) {
         List<FilteringFieldValue> filteringFieldValueList = new ArrayList<>();
         List<YormTuple> yormTuples = yormTable.tuples();
         for (Record obj : list) {
             for (YormTuple yormTuple : yormTuples) {
-                Method method = yormTuple.method();
-                Object value = method.invoke(obj);
+                Object value = yormTuple.accessor().get(obj);
                 if (value != null) {
                     mapValues(filteringFieldValueList, yormTuple, value, whereOperator);
                 }
@@ -128,15 +139,14 @@ public class QueryBuilder {
     }
 
     private void mapValues(List<FilteringFieldValue> filteringFieldValueList, YormTuple yormTuple, Object value, WhereOperator whereOperator) {
-        String dbFieldName = yormTuple.dbFieldName();
         DbType type = yormTuple.type();
         if (type.equals(DbType.CHAR) || type.equals(DbType.VARCHAR)) {
             String valueStr = (String) value;
             if (!valueStr.isEmpty()) {
-                filteringFieldValueList.add(new FilteringFieldValue(dbFieldName, type, "%" + valueStr + "%", ComparisonOperator.LIKE, whereOperator));
+                filteringFieldValueList.add(new FilteringFieldValue(yormTuple, "%" + valueStr + "%", ComparisonOperator.LIKE, whereOperator));
             }
         } else {
-            filteringFieldValueList.add(new FilteringFieldValue(dbFieldName, type, value, ComparisonOperator.EQUALS, whereOperator));
+            filteringFieldValueList.add(new FilteringFieldValue(yormTuple, value, ComparisonOperator.EQUALS, whereOperator));
         }
     }
 }
@@ -0,0 +1,367 @@
+package org.yorm.db.operations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
+import org.yorm.YormTable;
+import org.yorm.YormTuple;
+import org.yorm.exception.UncheckedYormException;
+import org.yorm.exception.YormException;
+import org.yorm.util.DbType;
+
+/**
+ * Reads a whole table with {@code COPY ... TO STDOUT (FORMAT binary)} of PostgreSQL, decoding each row straight from a
+ * reusable byte buffer into the constructor arguments of the record. Column values are only turned into strings for
+ * text columns. The connection is held until the stream is closed, or until the last row has been read.
+ */
+class CopyOutCursor<T extends Record> extends Spliterators.AbstractSpliterator<T> {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Dates and timestamps are sent as days and microseconds since 2000-01-01
+    private static final LocalDate POSTGRES_EPOCH_DATE = LocalDate.of(2000, 1, 1);
+    private static final long POSTGRES_EPOCH_SECONDS = POSTGRES_EPOCH_DATE.toEpochDay() * 86_400;
+    private static final short NUMERIC_NEGATIVE = 0x4000;
+    private static final short NUMERIC_POSITIVE = 0x0000;
+
+    private final YormTable yormTable;
+    private final List<YormTuple> tuples;
+    private final Class<?>[] readTypes;
+    private final Class<?>[] parameterTypes;
+    private final MethodHandle constructor;
+    private final Object[] values;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private Connection connection;
+    private InputStream input;
+    private boolean closed;
+
+    private CopyOutCursor(YormTable yormTable) throws IllegalAccessException {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.yormTable = yormTable;
+        this.tuples = yormTable.tuples();
+        this.readTypes = tuples.stream().map(tuple -> readType(tuple.type())).toArray(Class<?>[]::new);
+        Constructor<Record> recordConstructor = yormTable.constructor();
+        CopyOutCursor.class.getModule().addReads(recordConstructor.getDeclaringClass().getModule());
+        this.parameterTypes = recordConstructor.getParameterTypes();
+        this.constructor = MethodHandles.lookup().unreflectConstructor(recordConstructor)
+            .asSpreader(Object[].class, parameterTypes.length)
+            .asType(MethodType.methodType(Record.class, Object[].class));
+        this.values = new Object[parameterTypes.length];
+    }
+
+    static <T extends Record> Stream<T> open(DataSource ds, YormTable yormTable) throws YormException {
+        CopyOutCursor<T> cursor;
+        try {
+            cursor = new CopyOutCursor<>(yormTable);
+        } catch (IllegalAccessException e) {
+            throw new YormException("Couldn't access the constructor of record:" + yormTable.constructor().getDeclaringClass().getName(), e);
+        }
+        // Timestamps with a time zone are cast to the session time zone, which the driver sets to the one of the JVM, so that
+        // they are read like ResultSet.getTimestamp does. The cast leaves timestamps without a time zone as they are
+        String selectList = cursor.tuples.stream()
+            .map(tuple -> tuple.type() == DbType.TIMESTAMP ? "CAST(" + tuple.dbFieldName() + " AS timestamp)" : tuple.dbFieldName())
+            .collect(Collectors.joining(", "));
+        String sql = "COPY (SELECT " + selectList + " FROM " + yormTable.dbTable() + ") TO STDOUT (FORMAT binary)";
+        try {
+            cursor.connection = ds.getConnection();
+            cursor.input = new PGCopyInputStream(cursor.connection.unwrap(PGConnection.class), sql);
+            cursor.readHeader();
+        } catch (SQLException | IOException | YormException e) {
+            try {
+                cursor.close();
+            } catch (UncheckedYormException closeException) {
+                e.addSuppressed(closeException.getCause());
+            }
+            throw new YormException("Error while opening a copy of table:" + yormTable.dbTable(), e);
+        }
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+        try {
+            require(2);
+            short fieldCount = readShort();
+            if (fieldCount == -1) {
+                close();
+                return false;
+            }
+            if (fieldCount != tuples.size()) {
+                throw new YormException("Expected " + tuples.size() + " columns but got " + fieldCount + " copying table:" + yormTable.dbTable());
+            }
+            for (int i = 0; i < fieldCount; i++) {
+                values[i] = readValue(tuples.get(i), readTypes[i], parameterTypes[i]);
+            }
+            action.accept((T) buildRecord());
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedYormException(new YormException("Error while copying records from table:" + yormTable.dbTable(), e));
+        } catch (YormException e) {
+            throw new UncheckedYormException(e);
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            try {
+                // Closing the stream before the end cancels the copy
+                if (input != null) {
+                    input.close();
+                }
+            } finally {
+                // Null when the connection couldn't be opened
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new UncheckedYormException(new YormException("Error while closing a copy of table:" + yormTable.dbTable(), e));
+        }
+    }
+
+    private Record buildRecord() throws YormException {
+        try {
+            return (Record) constructor.invokeExact(values);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new YormException("Error while building record from copied row", t);
+        }
+    }
+
+    private void readHeader() throws IOException, YormException {
+        require(SIGNATURE.length + 8);
+        for (byte b : SIGNATURE) {
+            if (buffer[position++] != b) {
+                throw new YormException("Unexpected header copying table:" + yormTable.dbTable());
+            }
+        }
+        position += 4;
+        int extensionLength = readInt();
+        require(extensionLength);
+        position += extensionLength;
+    }
+
+    /**
+     * Decodes the field into the same type the materializer reads from a result set, and converts it when the record
+     * component has another type.
+     */
+    private Object readValue(YormTuple tuple, Class<?> readType, Class<?> parameterType) throws IOException, YormException {
+        require(4);
+        int length = readInt();
+        Object value;
+        if (length < 0) {
+            value = nullValue(readType);
+        } else {
+            require(length);
+            int start = position;
+            value = decode(tuple.type(), length);
+            position = start + length;
+        }
+        if (readType == parameterType) {
+            return value;
+        }
+        return tuple.deserializer().convert(value);
+    }
+
+    private Object decode(DbType type, int length) throws YormException {
+        return switch (type) {
+            case TINYINT, BOOLEAN -> length == 1 ? buffer[position] != 0 : readInteger(length) != 0;
+            case BIT -> readBit(length);
+            case SMALLINT, INTEGER -> (int) readInteger(length);
+            case BIGINT -> readInteger(length);
+            case DOUBLE -> length == 4 ? (double) Float.intBitsToFloat(readInt()) : Double.longBitsToDouble(readLong());
+            case FLOAT, REAL -> length == 8 ? (float) Double.longBitsToDouble(readLong()) : Float.intBitsToFloat(readInt());
+            case DECIMAL -> readNumeric();
+            case DATE -> {
+                int days = readInt();
+                // Infinite dates are sent as the largest and smallest ints
+                if (days == Integer.MAX_VALUE || days == Integer.MIN_VALUE) {
+                    throw new YormException("Infinite dates can't be read into a LocalDate, table:" + yormTable.dbTable());
+                }
+                yield POSTGRES_EPOCH_DATE.plusDays(days);
+            }
+            case TIME -> LocalTime.ofNanoOfDay(readLong() * 1000);
+            case TIMESTAMP -> {
+                long micros = readLong();
+                if (micros == Long.MAX_VALUE || micros == Long.MIN_VALUE) {
+                    throw new YormException("Infinite timestamps can't be read into a LocalDateTime, table:" + yormTable.dbTable());
+                }
+                yield LocalDateTime.ofEpochSecond(POSTGRES_EPOCH_SECONDS + Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000,
+                    ZoneOffset.UTC);
+            }
+            case CHAR, VARCHAR, TEXT -> new String(buffer, position, length, StandardCharsets.UTF_8);
+        };
+    }
+
+    /**
+     * PostgreSQL reports its booleans as BIT too, sent as a single byte. Real bit strings are sent as their length in bits
+     * followed by the bits, the first one in the highest bit of the first byte, and only single bits fit in a boolean.
+     */
+    private boolean readBit(int length) throws YormException {
+        if (length == 1) {
+            return buffer[position] != 0;
+        }
+        int bitCount = length >= 4 ? readInt() : -1;
+        if (bitCount != 1 || length != 5) {
+            throw new YormException("Only single bits can be read into a boolean, copying table:" + yormTable.dbTable());
+        }
+        return (buffer[position] & 0x80) != 0;
+    }
+
+    private static Class<?> readType(DbType type) {
+        return switch (type) {
+            case TINYINT, BIT, BOOLEAN -> boolean.class;
+            case SMALLINT, INTEGER -> int.class;
+            case BIGINT -> long.class;
+            case DOUBLE -> double.class;
+            case FLOAT, REAL -> float.class;
+            case DECIMAL -> BigDecimal.class;
+            case DATE -> LocalDate.class;
+            case TIME -> LocalTime.class;
+            case TIMESTAMP -> LocalDateTime.class;
+            case CHAR, VARCHAR, TEXT -> String.class;
+        };
+    }
+
+    /**
+     * Like a result set, nulls of primitive columns are read as zero or false.
+     */
+    private static Object nullValue(Class<?> readType) {
+        if (readType == boolean.class) {
+            return false;
+        }
+        if (readType == int.class) {
+            return 0;
+        }
+        if (readType == long.class) {
+            return 0L;
+        }
+        if (readType == double.class) {
+            return 0d;
+        }
+        if (readType == float.class) {
+            return 0f;
+        }
+        return null;
+    }
+
+    /**
+     * Numerics are sent as their number of base 10000 digits, the weight of the first one, the sign and the display scale,
+     * followed by the digits.
+     */
+    private BigDecimal readNumeric() throws YormException {
+        int digitCount = readShort();
+        int weight = readShort();
+        short sign = readShort();
+        int displayScale = readShort();
+        // NaN, Infinity and -Infinity have signs of their own
+        if (sign != NUMERIC_POSITIVE && sign != NUMERIC_NEGATIVE) {
+            throw new YormException("NaN and infinite numerics can't be read into a BigDecimal, table:" + yormTable.dbTable());
+        }
+        BigInteger unscaled = BigInteger.ZERO;
+        long smallUnscaled = 0;
+        for (int i = 0; i < digitCount; i++) {
+            short digit = readShort();
+            // Up to four digits of 10000 fit in a long
+            if (i < 4) {
+                smallUnscaled = smallUnscaled * 10_000 + digit;
+            } else {
+                if (i == 4) {
+                    unscaled = BigInteger.valueOf(smallUnscaled);
+                }
+                unscaled = unscaled.multiply(BigInteger.valueOf(10_000)).add(BigInteger.valueOf(digit));
+            }
+        }
+        int scale = (digitCount - 1 - weight) * 4;
+        BigDecimal value = digitCount > 4 ? new BigDecimal(unscaled, scale) : BigDecimal.valueOf(smallUnscaled, scale);
+        value = value.setScale(displayScale, RoundingMode.DOWN);
+        return sign == NUMERIC_NEGATIVE ? value.negate() : value;
+    }
+
+    private long readInteger(int length) {
+        return switch (length) {
+            case 1 -> buffer[position];
+            case 2 -> readShort();
+            case 4 -> readInt();
+            default -> readLong();
+        };
+    }
+
+    private short readShort() {
+        short value = (short) ((buffer[position] & 0xff) << 8 | (buffer[position + 1] & 0xff));
+        position += 2;
+        return value;
+    }
+
+    private int readInt() {
+        int value = (buffer[position] & 0xff) << 24 | (buffer[position + 1] & 0xff) << 16 | (buffer[position + 2] & 0xff) << 8 | (buffer[position + 3] & 0xff);
+        position += 4;
+        return value;
+    }
+
+    private long readLong() {
+        long high = readInt();
+        long low = readInt() & 0xffffffffL;
+        return high << 32 | low;
+    }
+
+    /**
+     * Makes sure the next {@code count} bytes are in the buffer, moving what's left to the beginning before reading more,
+     * and growing the buffer only for fields that don't fit in it.
+     */
+    private void require(int count) throws IOException, YormException {
+        if (limit - position >= count) {
+            return;
+        }
+        int remaining = limit - position;
+        if (count > buffer.length) {
+            byte[] larger = new byte[Math.max(count, buffer.length * 2)];
+            System.arraycopy(buffer, position, larger, 0, remaining);
+            buffer = larger;
+        } else {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+        while (limit < count) {
+            int read = input.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                throw new YormException("Unexpected end of the copy of table:" + yormTable.dbTable());
+            }
+            limit += read;
+        }
+    }
+}
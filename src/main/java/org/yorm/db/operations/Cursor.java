@@ -0,0 +1,104 @@
+package org.yorm.db.operations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
+import org.yorm.YormTable;
+import org.yorm.db.Dialect;
+import org.yorm.exception.UncheckedYormException;
+import org.yorm.exception.YormException;
+
+/**
+ * A forward only, read only result set that builds one record each time the stream pulls one. The connection is held
+ * until the stream is closed, or until the last row has been read.
+ */
+class Cursor<T extends Record> extends Spliterators.AbstractSpliterator<T> {
+
+    private final YormTable yormTable;
+    private Connection connection;
+    private PreparedStatement preparedStatement;
+    private ResultSet resultSet;
+    private boolean restoreAutoCommit;
+    private boolean closed;
+
+    private Cursor(YormTable yormTable) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.yormTable = yormTable;
+    }
+
+    static <T extends Record> Stream<T> open(DataSource ds, YormTable yormTable, String sql, StatementBinder binder, int fetchSize) throws YormException {
+        Cursor<T> cursor = new Cursor<>(yormTable);
+        try {
+            cursor.connection = ds.getConnection();
+            Dialect dialect = Dialect.of(cursor.connection);
+            if (dialect.streamsInTransaction() && cursor.connection.getAutoCommit()) {
+                cursor.connection.setAutoCommit(false);
+                cursor.restoreAutoCommit = true;
+            }
+            cursor.preparedStatement = cursor.connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            cursor.preparedStatement.setFetchSize(dialect.streamingFetchSize(fetchSize));
+            binder.bind(cursor.preparedStatement);
+            cursor.resultSet = cursor.preparedStatement.executeQuery();
+        } catch (SQLException | YormException e) {
+            try {
+                cursor.close();
+            } catch (UncheckedYormException closeException) {
+                e.addSuppressed(closeException.getCause());
+            }
+            throw new YormException("Error while opening a stream of records from table:" + yormTable.dbTable(), e);
+        }
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            action.accept((T) yormTable.materializer().materialize(resultSet));
+            return true;
+        } catch (SQLException e) {
+            throw new UncheckedYormException(new YormException("Error while streaming records from table:" + yormTable.dbTable(), e));
+        } catch (YormException e) {
+            throw new UncheckedYormException(e);
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (Connection c = connection) {
+            // Closing the statement closes its result set as well
+            if (preparedStatement != null) {
+                preparedStatement.close();
+            }
+            if (restoreAutoCommit) {
+                // Nothing was written, the transaction was only there for the driver to use a cursor
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new UncheckedYormException(new YormException("Error while closing a stream of records from table:" + yormTable.dbTable(), e));
+        }
+    }
+
+    @FunctionalInterface
+    interface StatementBinder {
+
+        void bind(PreparedStatement preparedStatement) throws SQLException, YormException;
+    }
+}
@@ -0,0 +1,73 @@
+package org.yorm.db.operations;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import org.yorm.db.Dialect;
+import org.yorm.exception.YormException;
+
+/**
+ * Runs a statement for an array of ids, adding the condition on the id column. The ids are split in IN lists whose sizes
+ * are padded up to a power of two by repeating the last id, so that a table only ever sees a handful of different
+ * statements. Databases that bind arrays get all the ids at once in a single parameter instead.
+ */
+final class IdChunks {
+
+    static final int MAX_CHUNK_SIZE = 1024;
+
+    private IdChunks() {
+    }
+
+    static void forEach(Connection connection, Dialect dialect, String statement, long[] ids, ChunkExecutor executor) throws SQLException, YormException {
+        if (dialect.bindsIdArrays()) {
+            Long[] boxedIds = new Long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                boxedIds[i] = ids[i];
+            }
+            try (PreparedStatement preparedStatement = connection.prepareStatement(statement + " WHERE id = ANY(?)")) {
+                Array array = connection.createArrayOf("bigint", boxedIds);
+                try {
+                    preparedStatement.setArray(1, array);
+                    executor.execute(preparedStatement);
+                } finally {
+                    array.free();
+                }
+            }
+            return;
+        }
+        PreparedStatement preparedStatement = null;
+        int preparedSize = 0;
+        try {
+            for (int from = 0; from < ids.length; from += MAX_CHUNK_SIZE) {
+                int count = Math.min(MAX_CHUNK_SIZE, ids.length - from);
+                int size = paddedSize(count);
+                if (size != preparedSize) {
+                    if (preparedStatement != null) {
+                        preparedStatement.close();
+                    }
+                    preparedStatement = connection.prepareStatement(statement + " WHERE id IN (" + "?, ".repeat(size - 1) + "?)");
+                    preparedSize = size;
+                }
+                for (int i = 0; i < size; i++) {
+                    preparedStatement.setLong(i + 1, ids[from + Math.min(i, count - 1)]);
+                }
+                executor.execute(preparedStatement);
+            }
+        } finally {
+            if (preparedStatement != null) {
+                preparedStatement.close();
+            }
+        }
+    }
+
+    static int paddedSize(int count) {
+        int highestOneBit = Integer.highestOneBit(count);
+        return highestOneBit == count ? count : Math.min(MAX_CHUNK_SIZE, highestOneBit << 1);
+    }
+
+    interface ChunkExecutor {
+
+        void execute(PreparedStatement preparedStatement) throws SQLException, YormException;
+    }
+}
@@ -0,0 +1,152 @@
+package org.yorm.db.operations;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.yorm.YormTable;
+import org.yorm.YormTuple;
+import org.yorm.exception.YormException;
+
+/**
+ * Bulk loads and exports records with the COPY command of PostgreSQL, which streams the rows without a statement, or a
+ * result set row, for each of them. The PostgreSQL driver is an optional dependency, and only the COPY classes need it.
+ */
+public class QueryCopy {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private QueryCopy() {
+    }
+
+    /**
+     * When the first record has an empty auto-increment id the column is left out, and the database generates it for every
+     * row. Otherwise all the columns are copied. The records are streamed, so all of them must be like the first one, and
+     * the whole copy is cancelled when a later record has an empty id and the first didn't, or the other way around.
+     *
+     * @return how many rows were copied
+     */
+    public static <T extends Record> long copyIn(DataSource ds, YormTable yormTable, T first, Iterator<? extends T> rest) throws YormException {
+        YormTuple autoIncrementKey = yormTable.autoIncrementKey();
+        boolean generatedIds = autoIncrementKey != null && QuerySave.hasEmptyId(first, autoIncrementKey);
+        List<YormTuple> tuples = generatedIds
+            ? yormTable.insertPlan().bindTuples()
+            : yormTable.forceInsertPlan().bindTuples();
+        String sql = "COPY " + yormTable.dbTable() + " (" + tuples.stream().map(YormTuple::dbFieldName).collect(Collectors.joining(", "))
+            + ") FROM STDIN (FORMAT text)";
+        try (Connection connection = ds.getConnection()) {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+            try {
+                TextRowWriter writer = new TextRowWriter(copyIn, tuples);
+                writer.write(first);
+                while (rest.hasNext()) {
+                    T obj = rest.next();
+                    if (generatedIds != (autoIncrementKey != null && QuerySave.hasEmptyId(obj, autoIncrementKey))) {
+                        throw new YormException("Records copied into table:" + yormTable.dbTable()
+                            + " must all have an empty id, or none of them, like the first one");
+                    }
+                    writer.write(obj);
+                }
+                writer.flush();
+                return copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        } catch (SQLException e) {
+            throw new YormException("Error while copying records into table:" + yormTable.dbTable(), e);
+        }
+    }
+
+    /**
+     * Reads the whole table in the binary format of COPY. The stream holds a connection and must be closed.
+     */
+    public static <T extends Record> Stream<T> copyOut(DataSource ds, YormTable yormTable) throws YormException {
+        return CopyOutCursor.open(ds, yormTable);
+    }
+
+    /**
+     * Formats the rows into a single text buffer, which is encoded into a single byte buffer and sent whenever it fills up.
+     */
+    private static final class TextRowWriter {
+
+        private final CopyIn copyIn;
+        private final List<YormTuple> tuples;
+        private final StringBuilder text = new StringBuilder(BUFFER_SIZE);
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private TextRowWriter(CopyIn copyIn, List<YormTuple> tuples) {
+            this.copyIn = copyIn;
+            this.tuples = tuples;
+        }
+
+        private void write(Record obj) throws SQLException {
+            for (int i = 0; i < tuples.size(); i++) {
+                if (i > 0) {
+                    text.append('\t');
+                }
+                appendValue(tuples.get(i), obj);
+            }
+            text.append('\n');
+            if (text.length() >= BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        private void appendValue(YormTuple tuple, Record obj) {
+            Object value = tuple.accessor().get(obj);
+            if (value != null) {
+                value = tuple.serializer().convert(value);
+            }
+            if (value == null) {
+                text.append("\\N");
+                return;
+            }
+            switch (tuple.type()) {
+                case TINYINT, BIT, BOOLEAN -> text.append((boolean) value ? 't' : 'f');
+                case CHAR, VARCHAR, TEXT -> appendEscaped(value.toString());
+                default -> text.append(value);
+            }
+        }
+
+        private void appendEscaped(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> text.append("\\\\");
+                    case '\n' -> text.append("\\n");
+                    case '\r' -> text.append("\\r");
+                    case '\t' -> text.append("\\t");
+                    default -> text.append(c);
+                }
+            }
+        }
+
+        private void flush() throws SQLException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            CoderResult result;
+            do {
+                result = encoder.encode(chars, bytes, true);
+                copyIn.writeToCopy(bytes.array(), 0, bytes.position());
+                bytes.clear();
+            } while (result.isOverflow());
+            encoder.reset();
+            text.setLength(0);
+        }
+    }
+}
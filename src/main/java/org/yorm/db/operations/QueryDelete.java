@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import javax.sql.DataSource;
 import org.yorm.YormTable;
+import org.yorm.db.Dialect;
 import org.yorm.exception.YormException;
 
 public class QueryDelete {
@@ -13,12 +14,8 @@ public class QueryDelete {
     }
 
     public static boolean delete(DataSource ds, YormTable yormTable, long id) throws YormException {
-        StringBuilder query = new StringBuilder("DELETE ");
-        query.append(" FROM ")
-            .append(yormTable.dbTable())
-            .append(" WHERE id=?");
         try (Connection connection = ds.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(query.toString())) {
+            PreparedStatement preparedStatement = connection.prepareStatement(yormTable.deletePlan().sql())) {
             preparedStatement.setLong(1, id);
             return preparedStatement.executeUpdate() > 0;
         } catch (SQLException e) {
@@ -26,4 +23,18 @@ public class QueryDelete {
         }
     }
 
+    /**
+     * @return how many records were deleted
+     */
+    public static int deleteAll(DataSource ds, YormTable yormTable, long[] ids, Dialect dialect) throws YormException {
+        int[] deleted = {0};
+        try (Connection connection = ds.getConnection()) {
+            IdChunks.forEach(connection, dialect, "DELETE FROM " + yormTable.dbTable(), ids,
+                preparedStatement -> deleted[0] += preparedStatement.executeUpdate());
+        } catch (SQLException e) {
+            throw new YormException("Error while deleting " + ids.length + " records from table:" + yormTable.dbTable(), e);
+        }
+        return deleted[0];
+    }
+
 }
@@ -2,132 +2,159 @@ package org.yorm.db.operations;
 
 import org.yorm.YormTable;
 import org.yorm.YormTuple;
+import org.yorm.db.Dialect;
 import org.yorm.db.FilteringFieldValue;
 import org.yorm.exception.YormException;
-import org.yorm.util.RowRecordConverter;
+import org.yorm.db.operations.select.CompiledSelect;
+import org.yorm.db.operations.select.SelectQuery;
 
 import javax.sql.DataSource;
-import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class QueryFind {
 
-    private static final RowRecordConverter rowRecordConverter = new RowRecordConverter();
+    public static final int DEFAULT_FETCH_SIZE = 1000;
 
     private QueryFind() {
     }
 
     public static <T extends Record> List<T> findAll(DataSource ds, YormTable yormTable) throws YormException {
-        List<YormTuple> tuples = yormTable.tuples();
         List<T> resultList = new ArrayList<>();
         try (Connection connection = ds.getConnection();
             PreparedStatement preparedStatement = connection.prepareStatement(yormTable.selectAllFromTable())) {
             ResultSet rs = preparedStatement.executeQuery();
             while (rs.next()) {
-                Object[] values = new Object[tuples.size()];
-                int params = 0;
-                loopResults(tuples, rs, values, params);
-                resultList.add((T) yormTable.constructor().newInstance(values));
+                resultList.add((T) yormTable.materializer().materialize(rs));
             }
-        } catch (SQLException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+        } catch (SQLException e) {
             throw new YormException("Error while getting all records from table:" + yormTable.dbTable(), e);
         }
         return resultList;
     }
 
+    public static <T extends Record> Stream<T> streamAll(DataSource ds, YormTable yormTable, int fetchSize) throws YormException {
+        return Cursor.open(ds, yormTable, yormTable.selectAllFromTable(), preparedStatement -> {
+        }, fetchSize);
+    }
+
+    public static <T extends Record> Stream<T> streamFiltering(DataSource ds, YormTable yormTable, SelectQuery selectQuery, int fetchSize)
+        throws YormException {
+        CompiledSelect compiledSelect = yormTable.compiledSelect(selectQuery.shape());
+        return Cursor.open(ds, yormTable, compiledSelect.sql(), preparedStatement -> compiledSelect.bind(preparedStatement, selectQuery), fetchSize);
+    }
+
+    /**
+     * Runs a query selecting a single row that is not a record, like an aggregate.
+     *
+     * @param noRow what to return when the query doesn't return any row
+     */
+    public static <R> R aggregate(DataSource ds, YormTable yormTable, SelectQuery selectQuery, RowReader<R> reader, R noRow) throws YormException {
+        CompiledSelect compiledSelect = yormTable.compiledSelect(selectQuery.shape());
+        try (Connection connection = ds.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(compiledSelect.sql())) {
+            compiledSelect.bind(preparedStatement, selectQuery);
+            ResultSet rs = preparedStatement.executeQuery();
+            return rs.next() ? reader.read(rs) : noRow;
+        } catch (SQLException e) {
+            throw new YormException("Error while running query:" + compiledSelect.sql() + " on table:" + yormTable.dbTable(), e);
+        }
+    }
+
     public static <T extends Record> T findById(DataSource ds, YormTable yormTable, long id) throws YormException {
-        List<YormTuple> tuples = yormTable.tuples();
-        String query = yormTable.selectAllFromTable() + " WHERE ID = ?";
         Object result = null;
         try (Connection connection = ds.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            PreparedStatement preparedStatement = connection.prepareStatement(yormTable.findByIdPlan().sql())) {
             preparedStatement.setLong(1, id);
             ResultSet rs = preparedStatement.executeQuery();
             if (rs.next()) {
-                Object[] values = new Object[tuples.size()];
-                int params = 0;
-                loopResults(tuples, rs, values, params);
-                result = yormTable.constructor().newInstance(values);
+                result = yormTable.materializer().materialize(rs);
             }
 
 
-        } catch (SQLException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+        } catch (SQLException e) {
             throw new YormException("Error while getting record with id:" + id + " from table:" + yormTable.dbTable(), e);
         }
         return (T) result;
     }
 
+    /**
+     * @return the records found, by id. Ids without a record are left out
+     */
+    public static <T extends Record> Map<Long, T> findByIds(DataSource ds, YormTable yormTable, long[] ids, Dialect dialect) throws YormException {
+        YormTuple idTuple = yormTable.getTupleWithDBFieldName("id");
+        Map<Long, T> result = new HashMap<>();
+        try (Connection connection = ds.getConnection()) {
+            IdChunks.forEach(connection, dialect, yormTable.selectAllFromTable(), ids, preparedStatement -> {
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        T obj = (T) yormTable.materializer().materialize(rs);
+                        result.put(((Number) idTuple.accessor().get(obj)).longValue(), obj);
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw new YormException("Error while getting " + ids.length + " records by id from table:" + yormTable.dbTable(), e);
+        }
+        return result;
+    }
+
     public static <T extends Record> List<T> findByForeignId(DataSource ds, YormTable yormTable, String fieldName, long id) throws YormException {
         List<T> resultList = new ArrayList<>();
-        List<YormTuple> tuples = yormTable.tuples();
         String query = yormTable.selectAllFromTable() + " WHERE " + fieldName + " = ?";
         try (Connection connection = ds.getConnection();
             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
             preparedStatement.setLong(1, id);
             ResultSet rs = preparedStatement.executeQuery();
             while (rs.next()) {
-                Object[] values = new Object[tuples.size()];
-                int params = 0;
-                loopResults(tuples, rs, values, params);
-                Object result = yormTable.constructor().newInstance(values);
-                resultList.add((T) result);
+                resultList.add((T) yormTable.materializer().materialize(rs));
             }
 
 
-        } catch (SQLException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+        } catch (SQLException e) {
             throw new YormException("Error while deleting record with foreign id:" + id + " from table:" + yormTable.dbTable(), e);
         }
         return resultList;
     }
 
+    /**
+     * The filters of records change with the number of records and the fields they set, so their selects aren't cached.
+     */
     public static <T extends Record> List<T> findFiltering(DataSource ds, YormTable yormTable, List<FilteringFieldValue> filteringList) throws YormException {
+        SelectQuery selectQuery = SelectQuery.of(filteringList);
+        return findFiltering(ds, yormTable, selectQuery, CompiledSelect.compile(yormTable, selectQuery.shape()));
+    }
+
+    public static <T extends Record> List<T> findFiltering(DataSource ds, YormTable yormTable, SelectQuery selectQuery) throws YormException {
+        return findFiltering(ds, yormTable, selectQuery, yormTable.compiledSelect(selectQuery.shape()));
+    }
+
+    private static <T extends Record> List<T> findFiltering(DataSource ds, YormTable yormTable, SelectQuery selectQuery, CompiledSelect compiledSelect)
+        throws YormException {
         List<T> resultList = new ArrayList<>();
-        List<YormTuple> tuples = yormTable.tuples();
-        StringBuilder query = new StringBuilder(yormTable.selectAllFromTable());
-        if (!filteringList.isEmpty()) {
-            query.append(" WHERE ")
-                .append(String.join(" ",
-                    filteringList.stream().map(fv -> fv.whereOperator().getOperator() + " " + fv.fieldName() + " " + fv.comparisonOperator().getOperator() + " ? ").toList()));
-        }
-        String completeQuery = cleanSql(query.toString());
         try (Connection connection = ds.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(completeQuery)) {
-            int paramIndex = 1;
-            for (FilteringFieldValue fieldValue : filteringList) {
-                rowRecordConverter.recordToRow(paramIndex, preparedStatement, fieldValue.fieldName(), fieldValue.value(), fieldValue.dbType(), yormTable.getTupleWithDBFieldName(fieldValue.fieldName()).serializer());
-                paramIndex++;
-            }
+            PreparedStatement preparedStatement = connection.prepareStatement(compiledSelect.sql())) {
+            compiledSelect.bind(preparedStatement, selectQuery);
             ResultSet rs = preparedStatement.executeQuery();
             while (rs.next()) {
-                Object[] values = new Object[tuples.size()];
-                int params = 0;
-                loopResults(tuples, rs, values, params);
-                Object result = yormTable.constructor().newInstance(values);
-                resultList.add((T) result);
+                resultList.add((T) yormTable.materializer().materialize(rs));
             }
-        } catch (SQLException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw new YormException("Error while filtering records with filtering list:" + filteringList + " from table:" + yormTable.dbTable(), e);
+        } catch (SQLException e) {
+            throw new YormException("Error while filtering records with query:" + selectQuery + " from table:" + yormTable.dbTable(), e);
         }
         return resultList;
     }
 
-    private static String cleanSql(String query) {
-        query = query.replace("  ", " ");
-        query = query.replace("WHERE OR", "WHERE");
-        query = query.replace("WHERE AND", "WHERE");
-        return query;
-    }
+    @FunctionalInterface
+    public interface RowReader<R> {
 
-    private static void loopResults(List<YormTuple> tuples, ResultSet rs, Object[] values, int params) throws SQLException, YormException {
-        for (YormTuple tuple : tuples) {
-            params = rowRecordConverter.rowToRecord(rs, values, params, tuple.dbFieldName(), tuple.type(), tuple.deserializer());
-        }
+        R read(ResultSet rs) throws SQLException;
     }
-
-
 }
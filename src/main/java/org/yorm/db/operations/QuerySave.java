@@ -1,73 +1,280 @@
 package org.yorm.db.operations;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.BitSet;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Objects;
+import java.util.stream.IntStream;
 import javax.sql.DataSource;
+import org.yorm.StatementPlan;
 import org.yorm.YormTable;
 import org.yorm.YormTuple;
+import org.yorm.db.Dialect;
 import org.yorm.exception.YormException;
-import org.yorm.util.DbType;
-import org.yorm.util.RowRecordConverter;
+import org.yorm.util.Accessor;
 
 public class QuerySave {
 
-    private static final RowRecordConverter rowRecordConverter = new RowRecordConverter();
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    // The most parameters a statement can have on PostgreSQL, whose protocol sends their number as a 16 bits integer
+    private static final int MAX_PARAMETERS = 65535;
 
     private QuerySave() {
     }
 
-    public static <T extends Record> void bulkInsert(DataSource ds, List<T> objList, YormTable yormTable) throws YormException {
-        String op = "?,";
+    /**
+     * Records with an empty auto-increment id, which get one from the database, are inserted first, followed by the ones
+     * with an explicit id. Both go in fixed size multi-row statements, with the remainder in a batch of single-row ones,
+     * so that the number of different SQL statements doesn't depend on the size of the list. Everything runs in a single
+     * transaction.
+     *
+     * @return the ids of the records, generated or not, in the same order
+     */
+    public static <T extends Record> long[] insertAll(DataSource ds, List<T> objList, YormTable yormTable, int chunkSize) throws YormException {
+        return writeAll(ds, objList, yormTable, chunkSize, null, "inserting");
+    }
+
+    /**
+     * Like {@link #insertAll}, but records with an auto-increment id that isn't empty are updated instead, following the
+     * same rules as a single save.
+     */
+    public static <T extends Record> long[] saveAll(DataSource ds, List<T> objList, YormTable yormTable, int chunkSize) throws YormException {
+        // Without an auto-increment id there is no way to tell new records apart, so a save inserts them all
+        StatementPlan updatePlan = yormTable.autoIncrementKey() == null ? null : yormTable.updatePlan();
+        return writeAll(ds, objList, yormTable, chunkSize, updatePlan, "saving");
+    }
+
+    /**
+     * Like {@link #insertAll}, but records with an explicit id are upserted in batches, inserting them or updating the row
+     * that already has their primary key with a single statement each.
+     */
+    public static <T extends Record> long[] upsertAll(DataSource ds, List<T> objList, YormTable yormTable, int chunkSize, Dialect dialect,
+        boolean rowAlias) throws YormException {
+        return writeAll(ds, objList, yormTable, chunkSize, yormTable.upsertPlan(dialect, rowAlias), "upserting");
+    }
+
+    /**
+     * @return the id of the record, generated by the database when it was empty
+     */
+    public static long upsert(DataSource ds, Record obj, YormTable yormTable, Dialect dialect, boolean rowAlias) throws YormException {
+        YormTuple autoIncrementKey = yormTable.autoIncrementKey();
+        if (autoIncrementKey != null && hasEmptyId(obj, autoIncrementKey)) {
+            return insert(ds, obj, yormTable);
+        }
+        StatementPlan plan = yormTable.upsertPlan(dialect, rowAlias);
+        try (Connection connection = ds.getConnection();
+            PreparedStatement preparedStatement = connection.prepareStatement(plan.sql())) {
+            plan.bind(preparedStatement, 1, obj);
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            throw new YormException("Error while upserting record:" + obj + " into table:" + yormTable.dbTable(), e);
+        }
+        return explicitId(obj, yormTable);
+    }
+
+    /**
+     * Updates only the columns whose values differ between {@code before} and {@code after}, finding the row by the
+     * primary key of {@code before}. Nothing is sent to the database when no column changed.
+     *
+     * @return whether a row was updated
+     */
+    public static boolean updateChanges(DataSource ds, Record before, Record after, YormTable yormTable) throws YormException {
+        if (yormTable.keyTuples().isEmpty()) {
+            throw new YormException("Can't update record:" + after + ", table:" + yormTable.dbTable() + " has no primary key");
+        }
         List<YormTuple> tuples = yormTable.tuples();
-        StringBuilder query = new StringBuilder("INSERT INTO ");
-        query.append(yormTable.dbTable())
-            .append(" (")
-            .append(yormTable.concatenatedFieldNames())
-            .append(") VALUES ");
-        String operands = op.repeat(tuples.size());
-        operands = operands.substring(0, operands.length() - 1);
-        for (int k = 0; k < objList.size(); k++) {
-            query.append("(").append(operands).append("),");
-        }
-        query.deleteCharAt(query.length() - 1);
-        query.append(";");
+        BitSet changedTuples = new BitSet(tuples.size());
+        for (int i = 0; i < tuples.size(); i++) {
+            Accessor accessor = tuples.get(i).accessor();
+            if (!Objects.equals(accessor.get(before), accessor.get(after))) {
+                changedTuples.set(i);
+            }
+        }
+        if (changedTuples.isEmpty()) {
+            return false;
+        }
+        StatementPlan plan = yormTable.updatePlan(changedTuples);
         try (Connection connection = ds.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(query.toString(),
-                yormTable.hasPrimaryKey() ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS)) {
-            int paramIndex = 1;
-            for (Record obj : objList) {
-                paramIndex = populatePreparedStatement(tuples, paramIndex, preparedStatement, obj);
+            PreparedStatement preparedStatement = connection.prepareStatement(plan.sql())) {
+            List<YormTuple> bindTuples = plan.bindTuples();
+            int changedCount = changedTuples.cardinality();
+            for (int i = 0; i < bindTuples.size(); i++) {
+                // The new values are set on the row that has the old key
+                bindTuples.get(i).binder().bind(preparedStatement, i + 1, i < changedCount ? after : before);
             }
-            preparedStatement.executeUpdate();
-        } catch (SQLException | IllegalAccessException | InvocationTargetException e) {
-            throw new YormException("Error while bulk inserting records:" + objList + " into table:" + yormTable.dbTable(), e);
+            return preparedStatement.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new YormException("Error while updating record:" + after + " in table:" + yormTable.dbTable(), e);
+        }
+    }
+
+    /**
+     * Updates all the records with the update statement of the table, sent in batches of {@code chunkSize} records over a
+     * single connection, in a single transaction.
+     */
+    public static <T extends Record> void updateAll(DataSource ds, List<T> objList, YormTable yormTable, int chunkSize) throws YormException {
+        if (yormTable.keyTuples().isEmpty()) {
+            throw new YormException("Can't update records, table:" + yormTable.dbTable() + " has no primary key");
+        }
+        int[] indexes = IntStream.range(0, objList.size()).toArray();
+        inTransaction(ds, connection -> executeBatches(connection, yormTable.updatePlan(), objList, indexes, indexes.length, chunkSize),
+            "Error while updating " + objList.size() + " records in table:" + yormTable.dbTable());
+    }
+
+    /**
+     * @param explicitIdPlan the statement run in batches for the records with an explicit id, or null to insert them in chunks
+     */
+    private static long[] writeAll(DataSource ds, List<? extends Record> objList, YormTable yormTable, int chunkSize, StatementPlan explicitIdPlan,
+        String operation) throws YormException {
+        long[] ids = new long[objList.size()];
+        int[] generatedIndexes = new int[objList.size()];
+        int[] explicitIndexes = new int[objList.size()];
+        int generatedCount = 0;
+        int explicitCount = 0;
+        YormTuple autoIncrementKey = yormTable.autoIncrementKey();
+        for (int i = 0; i < ids.length; i++) {
+            Record obj = objList.get(i);
+            if (autoIncrementKey != null && hasEmptyId(obj, autoIncrementKey)) {
+                generatedIndexes[generatedCount++] = i;
+            } else {
+                explicitIndexes[explicitCount++] = i;
+                ids[i] = explicitId(obj, yormTable);
+            }
+        }
+        String keyColumn = autoIncrementKey == null ? null : autoIncrementKey.dbFieldName();
+        int generated = generatedCount;
+        int explicit = explicitCount;
+        inTransaction(ds, connection -> {
+            insertChunks(connection, yormTable.insertPlan(), objList, generatedIndexes, generated, keyColumn, ids, chunkSize);
+            if (explicitIdPlan != null) {
+                executeBatches(connection, explicitIdPlan, objList, explicitIndexes, explicit, chunkSize);
+            } else {
+                insertChunks(connection, yormTable.forceInsertPlan(), objList, explicitIndexes, explicit, null, ids, chunkSize);
+            }
+        }, "Error while " + operation + " " + objList.size() + " records into table:" + yormTable.dbTable());
+        return ids;
+    }
+
+    private static long explicitId(Record obj, YormTable yormTable) {
+        List<YormTuple> keyTuples = yormTable.keyTuples();
+        if (keyTuples.size() == 1 && keyTuples.get(0).accessor().get(obj) instanceof Number id) {
+            return id.longValue();
+        }
+        return 0;
+    }
+
+    private static void inTransaction(DataSource ds, Work work, String errorMessage) throws YormException {
+        try (Connection connection = ds.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                work.run(connection);
+                connection.commit();
+            } catch (Throwable t) {
+                // Anything that fails, including the runtime exceptions of binders, must roll back before autocommit is
+                // restored, since turning it on again commits the open transaction
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackException) {
+                    t.addSuppressed(rollbackException);
+                }
+                throw t;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new YormException(errorMessage, e);
         }
     }
 
+    private static void executeBatches(Connection connection, StatementPlan plan, List<? extends Record> objList, int[] indexes, int count, int chunkSize)
+        throws SQLException, YormException {
+        if (count == 0) {
+            return;
+        }
+        int batchSize = Math.max(1, chunkSize);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(plan.sql())) {
+            for (int i = 0; i < count; i++) {
+                plan.bind(preparedStatement, 1, objList.get(indexes[i]));
+                preparedStatement.addBatch();
+                if ((i + 1) % batchSize == 0 || i + 1 == count) {
+                    preparedStatement.executeBatch();
+                }
+            }
+        }
+    }
+
+    private static void insertChunks(Connection connection, StatementPlan plan, List<? extends Record> objList, int[] indexes, int count, String keyColumn,
+        long[] ids, int chunkSize) throws SQLException, YormException {
+        int rowsPerStatement = Math.max(1, Math.min(chunkSize, MAX_PARAMETERS / Math.max(1, plan.bindTuples().size())));
+        int position = 0;
+        if (rowsPerStatement > 1 && count >= rowsPerStatement) {
+            try (PreparedStatement preparedStatement = prepare(connection, plan.withRows(rowsPerStatement), keyColumn)) {
+                while (count - position >= rowsPerStatement) {
+                    int paramIndex = 1;
+                    for (int row = 0; row < rowsPerStatement; row++) {
+                        paramIndex = plan.bind(preparedStatement, paramIndex, objList.get(indexes[position + row]));
+                    }
+                    preparedStatement.executeUpdate();
+                    readGeneratedKeys(preparedStatement, keyColumn, indexes, position, rowsPerStatement, ids);
+                    position += rowsPerStatement;
+                }
+            }
+        }
+        if (position < count) {
+            try (PreparedStatement preparedStatement = prepare(connection, plan.sql(), keyColumn)) {
+                for (int i = position; i < count; i++) {
+                    plan.bind(preparedStatement, 1, objList.get(indexes[i]));
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                readGeneratedKeys(preparedStatement, keyColumn, indexes, position, count - position, ids);
+            }
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, String keyColumn) throws SQLException {
+        // Naming the key column keeps PostgreSQL from returning every column of the inserted rows
+        return keyColumn == null ? connection.prepareStatement(sql) : connection.prepareStatement(sql, new String[]{keyColumn});
+    }
+
+    private static void readGeneratedKeys(PreparedStatement preparedStatement, String keyColumn, int[] indexes, int position, int rows, long[] ids)
+        throws SQLException {
+        if (keyColumn == null) {
+            return;
+        }
+        try (ResultSet rs = preparedStatement.getGeneratedKeys()) {
+            for (int row = 0; row < rows && rs.next(); row++) {
+                ids[indexes[position + row]] = rs.getLong(1);
+            }
+        }
+    }
+
+    public static boolean hasEmptyId(Record obj, YormTuple yormTuple) {
+        Object idObject = yormTuple.accessor().get(obj);
+        if (idObject == null) {
+            return true;
+        }
+        if (yormTuple.method().getReturnType().getName().equalsIgnoreCase("long")) {
+            return (long) idObject == 0;
+        }
+        if (yormTuple.method().getReturnType().getName().equalsIgnoreCase("int")) {
+            return (int) idObject == 0;
+        }
+        return false;
+    }
+
     public static long forceInsert(DataSource ds, Record obj, YormTable yormTable) throws YormException {
-        String op = "?,";
         long id = 0;
-        List<YormTuple> tuples = yormTable.tuples();
-        StringBuilder query = new StringBuilder("INSERT INTO ");
-        query.append(yormTable.dbTable())
-            .append(" (")
-            .append(yormTable.concatenatedFieldNames())
-            .append(") VALUES (")
-            .append(op.repeat(tuples.size()));
-        query.deleteCharAt(query.length() - 1);
-        query.append(")");
+        StatementPlan plan = yormTable.forceInsertPlan();
         try (Connection connection = ds.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(query.toString(),
+            PreparedStatement preparedStatement = connection.prepareStatement(plan.sql(),
                 yormTable.hasPrimaryKey() ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS)) {
-            int paramIndex = 1;
-            populatePreparedStatement(tuples, paramIndex, preparedStatement, obj);
+            plan.bind(preparedStatement, 1, obj);
             preparedStatement.executeUpdate();
             if (yormTable.hasPrimaryKey()) {
                 ResultSet rs = preparedStatement.getGeneratedKeys();
@@ -75,77 +282,46 @@ public class QuerySave {
                     id = rs.getInt(1);
                 }
             }
-        } catch (SQLException | IllegalAccessException | InvocationTargetException e) {
+        } catch (SQLException e) {
             throw new YormException("Error while force inserting record:" + obj + " into table:" + yormTable.dbTable(), e);
         }
         return id;
     }
 
     public static long insert(DataSource ds, Record obj, YormTable yormTable) throws YormException {
-        String op = "?,";
         long id = 0;
-        Predicate<YormTuple> predicateFilterOutPrimaryKeys = FilterPredicates.filterOutPrimaryKeys();
-        List<YormTuple> tuples = yormTable.tuples().stream().filter(predicateFilterOutPrimaryKeys).toList();
-        StringBuilder query = new StringBuilder("INSERT INTO ");
-        query.append(yormTable.dbTable())
-            .append(" (")
-            .append(String.join(",", tuples.stream().map(YormTuple::dbFieldName).toList()))
-            .append(") VALUES (")
-            .append(op.repeat(tuples.size()));
-        query.deleteCharAt(query.length() - 1);
-        query.append(")");
+        StatementPlan plan = yormTable.insertPlan();
         try (Connection connection = ds.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(query.toString(),
+            PreparedStatement preparedStatement = connection.prepareStatement(plan.sql(),
                 yormTable.hasPrimaryKey() ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS)) {
-            int paramIndex = 1;
-            populatePreparedStatement(tuples, paramIndex, preparedStatement, obj);
+            plan.bind(preparedStatement, 1, obj);
             preparedStatement.executeUpdate();
             ResultSet rs = preparedStatement.getGeneratedKeys();
             if (rs.next()) {
                 id = rs.getInt(1);
             }
-        } catch (SQLException | InvocationTargetException | IllegalAccessException e) {
+        } catch (SQLException e) {
             throw new YormException("Error while inserting record:" + obj + " into table:" + yormTable.dbTable(), e);
         }
         return id;
     }
 
     public static void update(DataSource ds, Record obj, YormTable yormTable) throws YormException {
-        String op = " = ?,";
-        String op2 = "=? AND ";
-        List<YormTuple> tuples = yormTable.tuples();
-        Predicate<YormTuple> predicateFilterKeepKeys = FilterPredicates.filterKeepKeys();
-        List<YormTuple> keyTuples = tuples.stream().filter(predicateFilterKeepKeys).toList();
-        StringBuilder query = new StringBuilder("UPDATE ");
-        query.append(yormTable.dbTable())
-            .append(" SET ")
-            .append(String.join(op, tuples.stream().map(YormTuple::dbFieldName).toList()))
-            .append("=?");
-        query.append(" WHERE ")
-            .append(String.join(op2, keyTuples.stream().map(YormTuple::dbFieldName).toList()))
-            .append("=?");
+        if (yormTable.keyTuples().isEmpty()) {
+            throw new YormException("Can't update record:" + obj + ", table:" + yormTable.dbTable() + " has no primary key");
+        }
+        StatementPlan plan = yormTable.updatePlan();
         try (Connection connection = ds.getConnection();
-            PreparedStatement preparedStatement = connection.prepareStatement(query.toString())) {
-            int paramIndex = 1;
-            populatePreparedStatement(tuples, paramIndex, preparedStatement, obj);
-            populatePreparedStatement(keyTuples, tuples.size() + 1, preparedStatement, obj);
+            PreparedStatement preparedStatement = connection.prepareStatement(plan.sql())) {
+            plan.bind(preparedStatement, 1, obj);
             preparedStatement.executeUpdate();
-        } catch (SQLException | IllegalAccessException | InvocationTargetException e) {
+        } catch (SQLException e) {
             throw new YormException("Error while updating record:" + obj + " in table:" + yormTable.dbTable(), e);
         }
     }
 
-    private static int populatePreparedStatement(List<YormTuple> tuples, int paramIndex, PreparedStatement preparedStatement, Record obj)
-        throws SQLException, IllegalAccessException, InvocationTargetException, YormException {
-        for (YormTuple tuple : tuples) {
-            Method method = tuple.method();
-            final Object value = method.invoke(obj);
-            final DbType type = tuple.type();
-            rowRecordConverter.recordToRow(paramIndex, preparedStatement, tuple.dbFieldName(), value, type, tuple.serializer());
-            paramIndex++;
-        }
-        return paramIndex;
-    }
-
+    private interface Work {
 
+        void run(Connection connection) throws SQLException, YormException;
+    }
 }
@@ -0,0 +1,18 @@
+package org.yorm.db.operations.operators;
+
+public enum SortOrder {
+    ASC("ASC"),
+    DESC("DESC");
+
+    private String operator;
+
+    SortOrder(String operator) {
+        this.operator = operator;
+    }
+
+    public String getOperator() {
+        return this.operator;
+    }
+
+
+}
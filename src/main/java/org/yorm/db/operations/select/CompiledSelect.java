@@ -0,0 +1,145 @@
+package org.yorm.db.operations.select;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.yorm.YormTable;
+import org.yorm.db.FilteringFieldValue;
+import org.yorm.db.operations.operators.SortOrder;
+import org.yorm.db.operations.select.SelectShape.Condition;
+import org.yorm.exception.YormException;
+import org.yorm.util.RowRecordConverter;
+
+/**
+ * The SQL of a filtered select, built once per {@link SelectShape} and table. Instances are immutable and shared by
+ * every thread running a query of the same shape, which only have to bind their values.
+ */
+public class CompiledSelect {
+
+    private static final RowRecordConverter rowRecordConverter = new RowRecordConverter();
+
+    private final String sql;
+
+    private CompiledSelect(String sql) {
+        this.sql = sql;
+    }
+
+    public static CompiledSelect compile(YormTable yormTable, SelectShape shape) {
+        StringBuilder query = new StringBuilder(shape.selectList() == null
+            ? yormTable.selectAllFromTable()
+            : "SELECT " + shape.selectList() + " FROM " + yormTable.dbTable());
+        List<Condition> conditions = shape.conditions();
+        List<String> seekColumns = shape.seekColumns();
+        boolean seeking = !seekColumns.isEmpty();
+        if (!conditions.isEmpty() || seeking) {
+            query.append(" WHERE ");
+        }
+        if (!conditions.isEmpty()) {
+            // The seek applies to every row matching the predicates, whatever the operators between them
+            query.append(seeking ? "(" : "");
+            for (int i = 0; i < conditions.size(); i++) {
+                Condition condition = conditions.get(i);
+                if (i > 0) {
+                    query.append(' ').append(condition.whereOperator().getOperator()).append(' ');
+                }
+                query.append(condition.dbFieldName())
+                    .append(' ')
+                    .append(condition.comparisonOperator().getOperator())
+                    .append(" ?");
+            }
+            query.append(seeking ? ") AND " : "");
+        }
+        List<Ordering> orderings = orderings(shape);
+        if (seeking) {
+            appendSeek(query, seekColumns, orderings.get(0).sortOrder() == SortOrder.DESC ? " < " : " > ", shape.dialect().comparesRowValues());
+        }
+        // Aggregates still need the ordering for the direction of the seek, but not the ORDER BY itself
+        for (int i = 0; i < orderings.size() && shape.selectList() == null; i++) {
+            Ordering ordering = orderings.get(i);
+            query.append(i == 0 ? " ORDER BY " : ", ").append(ordering.dbFieldName()).append(' ').append(ordering.sortOrder().getOperator());
+        }
+        shape.dialect().appendPaging(query, shape.limited(), shape.offset());
+        return new CompiledSelect(query.toString());
+    }
+
+    /**
+     * Rows come after the seek values when their first seek column does, or when it's equal and the next one does, and so
+     * on, which lets the primary key break the ties of a column that isn't unique.
+     */
+    private static void appendSeek(StringBuilder query, List<String> seekColumns, String operator, boolean rowValues) {
+        if (seekColumns.size() == 1) {
+            query.append(seekColumns.get(0)).append(operator).append('?');
+        } else if (rowValues) {
+            query.append('(').append(String.join(", ", seekColumns)).append(')').append(operator)
+                .append('(').append(String.join(", ", Collections.nCopies(seekColumns.size(), "?"))).append(')');
+        } else {
+            int last = seekColumns.size() - 1;
+            for (int i = 0; i < last; i++) {
+                String column = seekColumns.get(i);
+                query.append('(').append(column).append(operator).append("? OR (").append(column).append(" = ? AND ");
+            }
+            query.append(seekColumns.get(last)).append(operator).append('?').append("))".repeat(last));
+        }
+    }
+
+    /**
+     * Keyset pagination only works when the rows are sorted by the seek columns first, all of them in the order the first
+     * one was given, or ascending otherwise.
+     */
+    private static List<Ordering> orderings(SelectShape shape) {
+        List<String> seekColumns = shape.seekColumns();
+        if (seekColumns.isEmpty()) {
+            return shape.orderings();
+        }
+        List<Ordering> orderings = new ArrayList<>(shape.orderings().size() + seekColumns.size());
+        SortOrder sortOrder = shape.orderings().stream()
+            .filter(ordering -> ordering.dbFieldName().equals(seekColumns.get(0)))
+            .findFirst()
+            .map(Ordering::sortOrder)
+            .orElse(SortOrder.ASC);
+        seekColumns.forEach(seekColumn -> orderings.add(new Ordering(seekColumn, sortOrder)));
+        shape.orderings().stream().filter(ordering -> !seekColumns.contains(ordering.dbFieldName())).forEach(orderings::add);
+        return orderings;
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    public void bind(PreparedStatement preparedStatement, SelectQuery selectQuery) throws SQLException, YormException {
+        int paramIndex = 1;
+        for (FilteringFieldValue fieldValue : selectQuery.filters()) {
+            bind(preparedStatement, paramIndex, fieldValue);
+            paramIndex++;
+        }
+        List<FilteringFieldValue> seek = selectQuery.seek();
+        boolean rowValues = selectQuery.dialect().comparesRowValues();
+        for (int i = 0; i < seek.size(); i++) {
+            bind(preparedStatement, paramIndex, seek.get(i));
+            paramIndex++;
+            // Every seek column but the last is also compared for equality when it isn't a row value
+            if (!rowValues && i < seek.size() - 1) {
+                bind(preparedStatement, paramIndex, seek.get(i));
+                paramIndex++;
+            }
+        }
+        boolean limited = selectQuery.limit() != SelectQuery.NO_LIMIT;
+        boolean offset = selectQuery.offset() > 0;
+        if (offset && selectQuery.dialect().bindsOffsetFirst()) {
+            preparedStatement.setLong(paramIndex++, selectQuery.offset());
+        }
+        if (limited) {
+            preparedStatement.setLong(paramIndex++, selectQuery.limit());
+        }
+        if (offset && !selectQuery.dialect().bindsOffsetFirst()) {
+            preparedStatement.setLong(paramIndex, selectQuery.offset());
+        }
+    }
+
+    private static void bind(PreparedStatement preparedStatement, int paramIndex, FilteringFieldValue fieldValue) throws SQLException, YormException {
+        rowRecordConverter.recordToRow(paramIndex, preparedStatement, fieldValue.fieldName(), fieldValue.value(), fieldValue.tuple().type(),
+            fieldValue.tuple().serializer());
+    }
+}
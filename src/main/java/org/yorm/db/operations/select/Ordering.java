@@ -0,0 +1,7 @@
+package org.yorm.db.operations.select;
+
+import org.yorm.db.operations.operators.SortOrder;
+
+public record Ordering(String dbFieldName, SortOrder sortOrder) {
+
+}
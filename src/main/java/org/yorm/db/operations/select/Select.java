@@ -1,27 +1,72 @@
 package org.yorm.db.operations.select;
 
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 
 import org.yorm.IdentifiableFunction;
+import org.yorm.MapBuilder;
 import org.yorm.YormTable;
 import org.yorm.YormTuple;
+import org.yorm.db.Dialect;
 import org.yorm.db.FilteringFieldValue;
 import org.yorm.db.operations.QueryFind;
 import org.yorm.db.operations.operators.ComparisonOperator;
+import org.yorm.db.operations.operators.SortOrder;
 import org.yorm.db.operations.operators.WhereOperator;
 import org.yorm.exception.YormException;
+import org.yorm.util.RecordMaterializer;
 
 public class Select<T extends Record> {
 
     private final YormTable yormTable;
     private final List<FilteringFieldValue> list = new ArrayList<>();
     private final DataSource ds;
+    private final int fetchSize;
+    private Dialect dialect;
+    private final MapBuilder mapBuilder;
+    private List<FilteringFieldValue> seek = List.of();
+    private final List<Ordering> orderings = new ArrayList<>();
+    private long limit = SelectQuery.NO_LIMIT;
+    private long offset;
 
+    /**
+     * Selects are usually created by {@link org.yorm.Yorm#from(Class)}, which already knows the database. This one detects
+     * it from the DataSource before the first query, since paging is written differently on each of them. It doesn't know
+     * the codecs registered in Yorm either, so it can't {@link #select(Class)} projections.
+     */
     public Select(DataSource ds, YormTable yormTable) {
+        this(ds, yormTable, QueryFind.DEFAULT_FETCH_SIZE, null, null);
+    }
+
+    public Select(DataSource ds, YormTable yormTable, int fetchSize, Dialect dialect, MapBuilder mapBuilder) {
         this.ds = ds;
         this.yormTable = yormTable;
+        this.fetchSize = fetchSize;
+        this.dialect = dialect;
+        this.mapBuilder = mapBuilder;
+    }
+
+    /**
+     * Reads the results into a narrower record, whose components are a subset of the columns of the table, so that the
+     * rest of the columns are not fetched. The filters, sorting and paging chosen so far are kept, and the ones added
+     * afterwards refer to the components of the narrower record.
+     */
+    public <P extends Record> Select<P> select(Class<P> projectionClass) throws YormException {
+        if (mapBuilder == null) {
+            throw new YormException("Projections need a select created with Yorm.from, which maps them with its codecs");
+        }
+        Select<P> projected = new Select<>(ds, yormTable.projection(projectionClass, mapBuilder), fetchSize, dialect, mapBuilder);
+        projected.list.addAll(list);
+        projected.seek = seek;
+        projected.orderings.addAll(orderings);
+        projected.limit = limit;
+        projected.offset = offset;
+        return projected;
     }
 
     public <U> SelectComparison<T, U> where(IdentifiableFunction<T, U> getter) throws YormException {
@@ -36,8 +81,171 @@ public class Select<T extends Record> {
         return where(getter, WhereOperator.OR);
     }
 
+    public Select<T> limit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public Select<T> offset(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    public <U> Select<T> orderBy(IdentifiableFunction<T, U> getter) throws YormException {
+        return orderBy(getter, SortOrder.ASC);
+    }
+
+    /**
+     * Sorts the results in the database, which combined with {@link #limit(long)} only sends the top rows back. Can be
+     * called several times, for each column to sort by.
+     */
+    public <U> Select<T> orderBy(IdentifiableFunction<T, U> getter, SortOrder sortOrder) throws YormException {
+        YormTuple tuple = yormTable.getTupleWithObjectFieldName(getter.getCallingFunctionName());
+        orderings.add(new Ordering(tuple.dbFieldName(), sortOrder));
+        return this;
+    }
+
+    /**
+     * Keyset pagination: keeps the rows whose primary key comes after the value, sorted by it first, descending if it was
+     * given to {@link #orderBy(IdentifiableFunction, SortOrder)} that way, ascending otherwise. Unlike an offset, the
+     * database seeks straight to the first row, so deep pages cost the same as the first one. The value is usually the id
+     * of the last record of the previous page. Other columns may repeat their values, use {@link #after(Record,
+     * IdentifiableFunction)} for them.
+     */
+    public <U> Select<T> after(IdentifiableFunction<T, U> getter, U value) throws YormException {
+        YormTuple tuple = yormTable.getTupleWithObjectFieldName(getter.getCallingFunctionName());
+        if (!yormTable.keyTuples().equals(List.of(tuple))) {
+            throw new YormException("Only the primary key of table:" + yormTable.dbTable() + " can be sought by value, not column:"
+                + tuple.dbFieldName() + ", seek after the last record instead");
+        }
+        seek = List.of(seekValue(tuple, value));
+        return this;
+    }
+
+    /**
+     * Keyset pagination over any column, like {@link #after(IdentifiableFunction, Object)}, keeping the rows that come after
+     * the last record of the previous page. The rows are sorted by the column and then by the primary key, which breaks
+     * the ties of rows sharing the value of the last record, so none of them is skipped. The seek is only cheap when an
+     * index covers the column followed by the primary key.
+     */
+    public <U> Select<T> after(T lastRecord, IdentifiableFunction<T, U> getter) throws YormException {
+        YormTuple tuple = yormTable.getTupleWithObjectFieldName(getter.getCallingFunctionName());
+        if (yormTable.keyTuples().isEmpty()) {
+            throw new YormException("Can't break the ties of column:" + tuple.dbFieldName() + ", table:" + yormTable.dbTable()
+                + " has no primary key");
+        }
+        List<FilteringFieldValue> seekValues = new ArrayList<>();
+        seekValues.add(seekValue(tuple, tuple.accessor().get(lastRecord)));
+        for (YormTuple keyTuple : yormTable.keyTuples()) {
+            if (keyTuple != tuple) {
+                seekValues.add(seekValue(keyTuple, keyTuple.accessor().get(lastRecord)));
+            }
+        }
+        seek = List.copyOf(seekValues);
+        return this;
+    }
+
+    private static FilteringFieldValue seekValue(YormTuple tuple, Object value) {
+        return new FilteringFieldValue(tuple, value, ComparisonOperator.GREATER_THAN, WhereOperator.AND);
+    }
+
     public List<T> find() throws YormException {
-        return QueryFind.findFiltering(ds, yormTable, list);
+        return QueryFind.findFiltering(ds, yormTable, query());
+    }
+
+    /**
+     * Counts the matching rows in the database, without reading them. Sorting and paging are ignored.
+     */
+    public long count() throws YormException {
+        return QueryFind.aggregate(ds, yormTable, query().aggregate("COUNT(*)", SelectQuery.NO_LIMIT), rs -> rs.getLong(1), 0L);
+    }
+
+    public boolean exists() throws YormException {
+        return QueryFind.aggregate(ds, yormTable, query().aggregate("1", 1), rs -> true, false);
+    }
+
+    /**
+     * Sums the column in the database, keeping the precision of its type: integral columns are summed into a {@link Long},
+     * DECIMAL columns into a {@link BigDecimal} and the rest into a {@link Double}.
+     *
+     * @return the sum of the column over the matching rows, or 0 if there are none
+     */
+    public <U> Number sum(IdentifiableFunction<T, U> getter) throws YormException {
+        YormTuple tuple = yormTable.getTupleWithObjectFieldName(getter.getCallingFunctionName());
+        SelectQuery aggregateQuery = query().aggregate("SUM(" + tuple.dbFieldName() + ")", SelectQuery.NO_LIMIT);
+        return switch (tuple.type()) {
+            case SMALLINT, INTEGER, BIGINT -> QueryFind.aggregate(ds, yormTable, aggregateQuery, rs -> rs.getLong(1), 0L);
+            case DECIMAL -> QueryFind.aggregate(ds, yormTable, aggregateQuery, rs -> {
+                BigDecimal sum = rs.getBigDecimal(1);
+                return sum == null ? BigDecimal.ZERO : sum;
+            }, BigDecimal.ZERO);
+            case FLOAT, REAL, DOUBLE -> QueryFind.aggregate(ds, yormTable, aggregateQuery, rs -> rs.getDouble(1), 0d);
+            default -> throw new YormException("Can't sum column:" + tuple.dbFieldName() + " of type:" + tuple.type());
+        };
+    }
+
+    /**
+     * Works on any column that can be sorted, like numbers, dates or text, reading the value like the record component.
+     *
+     * @return the minimum of the column over the matching rows, or null if there are none
+     */
+    public <U> U min(IdentifiableFunction<T, U> getter) throws YormException {
+        return extreme("MIN", getter);
+    }
+
+    /**
+     * @return the maximum of the column over the matching rows, or null if there are none
+     * @see #min
+     */
+    public <U> U max(IdentifiableFunction<T, U> getter) throws YormException {
+        return extreme("MAX", getter);
+    }
+
+    /**
+     * @return the average of the column over the matching rows, or NaN if there are none
+     */
+    public <U> double avg(IdentifiableFunction<T, U> getter) throws YormException {
+        YormTuple tuple = yormTable.getTupleWithObjectFieldName(getter.getCallingFunctionName());
+        SelectQuery aggregateQuery = query().aggregate("AVG(" + tuple.dbFieldName() + ")", SelectQuery.NO_LIMIT);
+        return QueryFind.aggregate(ds, yormTable, aggregateQuery, rs -> {
+            double value = rs.getDouble(1);
+            return rs.wasNull() ? Double.NaN : value;
+        }, Double.NaN);
+    }
+
+    private <U> U extreme(String function, IdentifiableFunction<T, U> getter) throws YormException {
+        YormTuple tuple = yormTable.getTupleWithObjectFieldName(getter.getCallingFunctionName());
+        SelectQuery aggregateQuery = query().aggregate(function + "(" + tuple.dbFieldName() + ")", SelectQuery.NO_LIMIT);
+        //noinspection unchecked
+        return (U) QueryFind.aggregate(ds, yormTable, aggregateQuery, rs -> RecordMaterializer.readValue(rs, 1, tuple), null);
+    }
+
+    /**
+     * Reads the matching records lazily, holding a connection until the stream is closed.
+     */
+    public Stream<T> stream() throws YormException {
+        return QueryFind.streamFiltering(ds, yormTable, query(), fetchSize);
+    }
+
+    private SelectQuery query() throws YormException {
+        return new SelectQuery(dialect(), null, list, seek, orderings, limit, offset);
+    }
+
+    private Dialect dialect() throws YormException {
+        if (dialect == null) {
+            try (Connection connection = ds.getConnection()) {
+                dialect = Dialect.of(connection);
+            } catch (SQLException e) {
+                throw new YormException("Error while detecting the database", e);
+            }
+        }
+        return dialect;
     }
 
 
@@ -47,34 +255,32 @@ public class Select<T extends Record> {
         YormTuple currentTuple = yormTable.getTupleWithObjectFieldName(getterName);
         return new SelectComparison<>() {
             public Select<T> equalTo(U value) {
-                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple.dbFieldName(), currentTuple.type(), value, ComparisonOperator.EQUALS, whereOperator);
+                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple, value, ComparisonOperator.EQUALS, whereOperator);
                 list.add(filteringFieldValue);
                 return Select.this;
             }
 
             public Select<T> greaterThan(U value) {
-                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple.dbFieldName(), currentTuple.type(), value, ComparisonOperator.GREATER_THAN, whereOperator);
+                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple, value, ComparisonOperator.GREATER_THAN, whereOperator);
                 list.add(filteringFieldValue);
                 return Select.this;
             }
 
             public Select<T> lessThan(U value) {
-                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple.dbFieldName(), currentTuple.type(), value, ComparisonOperator.LESS_THAN, whereOperator);
+                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple, value, ComparisonOperator.LESS_THAN, whereOperator);
                 list.add(filteringFieldValue);
                 return Select.this;
             }
 
             public Select<T> notEqualTo(U value) {
-                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple.dbFieldName(), currentTuple.type(), value, ComparisonOperator.NOT_EQUALS,
-                    whereOperator);
+                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple, value, ComparisonOperator.NOT_EQUALS, whereOperator);
                 list.add(filteringFieldValue);
                 return Select.this;
             }
 
             public Select<T> like(U value) {
                 String valueStr = "%" + value + "%";
-                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple.dbFieldName(), currentTuple.type(), valueStr, ComparisonOperator.LIKE,
-                    whereOperator);
+                FilteringFieldValue filteringFieldValue = new FilteringFieldValue(currentTuple, valueStr, ComparisonOperator.LIKE, whereOperator);
                 list.add(filteringFieldValue);
                 return Select.this;
             }
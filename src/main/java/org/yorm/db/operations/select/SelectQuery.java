@@ -0,0 +1,47 @@
+package org.yorm.db.operations.select;
+
+import java.util.List;
+import org.yorm.db.Dialect;
+import org.yorm.db.FilteringFieldValue;
+
+/**
+ * Everything a filtered select needs to be run: its {@link SelectShape} plus the values to bind.
+ *
+ * @param selectList what to select instead of the columns of the table, like an aggregate, or null
+ * @param seek the columns and values to start after, for keyset pagination, the sorting column followed by the primary
+ *     key that breaks its ties, or empty
+ * @param limit the maximum number of rows, or {@link #NO_LIMIT}
+ */
+public record SelectQuery(
+    Dialect dialect,
+    String selectList,
+    List<FilteringFieldValue> filters,
+    List<FilteringFieldValue> seek,
+    List<Ordering> orderings,
+    long limit,
+    long offset
+) {
+
+    public static final long NO_LIMIT = -1;
+
+    public SelectQuery {
+        filters = List.copyOf(filters);
+        seek = List.copyOf(seek);
+        orderings = List.copyOf(orderings);
+    }
+
+    public static SelectQuery of(List<FilteringFieldValue> filters) {
+        return new SelectQuery(Dialect.OTHER, null, filters, List.of(), List.of(), NO_LIMIT, 0);
+    }
+
+    /**
+     * The same query selecting something else than the rows, which makes the sorting pointless and the paging wrong.
+     */
+    public SelectQuery aggregate(String selectList, long limit) {
+        return new SelectQuery(dialect, selectList, filters, seek, orderings, limit, 0);
+    }
+
+    public SelectShape shape() {
+        return SelectShape.of(this);
+    }
+}
@@ -0,0 +1,47 @@
+package org.yorm.db.operations.select;
+
+import java.util.List;
+import org.yorm.db.Dialect;
+import org.yorm.db.FilteringFieldValue;
+import org.yorm.db.operations.operators.ComparisonOperator;
+import org.yorm.db.operations.operators.WhereOperator;
+
+/**
+ * What a filtered select looks like regardless of the values it's filtering by, so that queries sharing it can share
+ * their SQL.
+ *
+ * @param selectList what to select instead of the columns of the table, or null
+ * @param seekColumns the columns keyset pagination starts after, or empty
+ */
+public record SelectShape(
+    Dialect dialect,
+    String selectList,
+    List<Condition> conditions,
+    List<String> seekColumns,
+    List<Ordering> orderings,
+    boolean limited,
+    boolean offset
+) {
+
+    public static SelectShape of(SelectQuery query) {
+        List<FilteringFieldValue> filters = query.filters();
+        Condition[] conditions = new Condition[filters.size()];
+        for (int i = 0; i < conditions.length; i++) {
+            FilteringFieldValue fieldValue = filters.get(i);
+            conditions[i] = new Condition(fieldValue.fieldName(), fieldValue.comparisonOperator(), fieldValue.whereOperator());
+        }
+        return new SelectShape(
+            query.dialect(),
+            query.selectList(),
+            List.of(conditions),
+            query.seek().stream().map(FilteringFieldValue::fieldName).toList(),
+            query.orderings(),
+            query.limit() != SelectQuery.NO_LIMIT,
+            query.offset() > 0
+        );
+    }
+
+    public record Condition(String dbFieldName, ComparisonOperator comparisonOperator, WhereOperator whereOperator) {
+
+    }
+}
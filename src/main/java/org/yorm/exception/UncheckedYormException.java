@@ -0,0 +1,16 @@
+package org.yorm.exception;
+
+/**
+ * Wraps a {@link YormException} where a checked exception can't be thrown, like while consuming a stream of records.
+ */
+public class UncheckedYormException extends RuntimeException {
+
+    public UncheckedYormException(YormException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized YormException getCause() {
+        return (YormException) super.getCause();
+    }
+}
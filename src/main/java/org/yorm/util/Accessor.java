@@ -0,0 +1,38 @@
+package org.yorm.util;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import org.yorm.exception.YormException;
+
+/**
+ * Reads one component of a record. Instances are generated with {@link LambdaMetafactory}, so reading a field is a plain
+ * interface call that the JIT can inline, instead of a reflective {@link Method#invoke}.
+ */
+@FunctionalInterface
+public interface Accessor {
+
+    Object get(Record recordObj);
+
+    static Accessor of(Method method) throws YormException {
+        Accessor.class.getModule().addReads(method.getDeclaringClass().getModule());
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle accessor = lookup.unreflect(method);
+            CallSite callSite = LambdaMetafactory.metafactory(
+                lookup,
+                "get",
+                MethodType.methodType(Accessor.class),
+                MethodType.methodType(Object.class, Record.class),
+                accessor,
+                accessor.type().wrap()
+            );
+            return (Accessor) callSite.getTarget().invokeExact();
+        } catch (Throwable t) {
+            throw new YormException("Couldn't build an accessor for method:" + method, t);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.yorm.util;
+
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.yorm.exception.YormException;
+import org.yorm.util.RowRecordConverter.Converter;
+
+/**
+ * Converters between the java type of a column and the type of a record component, keyed by both types. The built-in
+ * ones are created once per pair of types and shared by every table, and applications can register their own codecs for
+ * types Yorm doesn't know about, like UUIDs, money or JSON documents.
+ */
+public class CodecRegistry {
+
+    private final Map<ConversionKey, Converter<?>> converters = new ConcurrentHashMap<>();
+
+    /**
+     * Registers how a record component of {@code javaType} is stored in a column read as {@code dbType}, like
+     * {@code String.class} for VARCHAR or TEXT columns and {@code long.class} for BIGINT ones. Nulls are passed through
+     * without calling the functions. Only records mapped after the registration use it.
+     */
+    public <J, D> void register(Class<J> javaType, Class<D> dbType, Function<? super J, ? extends D> encoder, Function<? super D, ? extends J> decoder) {
+        Class<?> boxedDbType = MethodType.methodType(dbType).wrap().returnType();
+        converters.put(new ConversionKey(javaType, dbType), input -> input == null ? null : encoder.apply(javaType.cast(input)));
+        converters.put(new ConversionKey(dbType, javaType), input -> {
+            if (input == null) {
+                return null;
+            }
+            // Primitive classes can't cast, so the value is checked against its wrapper
+            //noinspection unchecked
+            return decoder.apply((D) boxedDbType.cast(input));
+        });
+    }
+
+    public Converter<?> converterFor(Class<?> inputType, Class<?> outputType) throws YormException {
+        ConversionKey key = new ConversionKey(inputType, outputType);
+        Converter<?> converter = converters.get(key);
+        if (converter != null) {
+            return converter;
+        }
+        try {
+            converter = converters.computeIfAbsent(key, k -> RowRecordConverter.converterFor(k.inputType(), k.outputType()));
+        } catch (RuntimeException e) {
+            throw new YormException(noConversionMessage(inputType, outputType), e);
+        }
+        if (converter == null) {
+            throw new YormException(noConversionMessage(inputType, outputType));
+        }
+        return converter;
+    }
+
+    /**
+     * The converter from a record component to its column, which unlike {@link #converterFor} keeps values that are wider
+     * than the column, to bind them with their own setter.
+     */
+    public Converter<?> serializerFor(Class<?> javaType, Class<?> dbType) throws YormException {
+        Converter<?> converter = converters.get(new ConversionKey(javaType, dbType));
+        if (converter == null) {
+            converter = RowRecordConverter.narrowingSerializer(javaType, dbType);
+        }
+        return converter != null ? converter : converterFor(javaType, dbType);
+    }
+
+    private static String noConversionMessage(Class<?> inputType, Class<?> outputType) {
+        return "No conversion from " + inputType.getName() + " to " + outputType.getName() + ", a codec can be registered for it";
+    }
+
+    private record ConversionKey(Class<?> inputType, Class<?> outputType) {
+
+    }
+}
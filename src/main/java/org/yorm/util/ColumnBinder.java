@@ -0,0 +1,152 @@
+package org.yorm.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import org.yorm.exception.YormException;
+
+/**
+ * Binds one record component to a statement parameter. When the component is a primitive, or already has the type the
+ * statement setter expects, the accessor and the setter are chained into a single {@link MethodHandle} and the value is
+ * never boxed. Anything else goes through the serializer and {@link RowRecordConverter#recordToRow}.
+ */
+public class ColumnBinder {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final RowRecordConverter rowRecordConverter = new RowRecordConverter();
+
+    private final String dbFieldName;
+    private final DbType type;
+    private final Accessor accessor;
+    private final RowRecordConverter.Converter<?> serializer;
+    private final MethodHandle binder;
+
+    private ColumnBinder(String dbFieldName, DbType type, Accessor accessor, RowRecordConverter.Converter<?> serializer, MethodHandle binder) {
+        this.dbFieldName = dbFieldName;
+        this.type = type;
+        this.accessor = accessor;
+        this.serializer = serializer;
+        this.binder = binder;
+    }
+
+    public static ColumnBinder of(Method method, String dbFieldName, DbType type, Accessor accessor, RowRecordConverter.Converter<?> serializer)
+        throws YormException {
+        ColumnBinder.class.getModule().addReads(method.getDeclaringClass().getModule());
+        try {
+            return new ColumnBinder(dbFieldName, type, accessor, serializer, directBinder(method, type));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new YormException("Couldn't build a binder for method:" + method, e);
+        }
+    }
+
+    public void bind(PreparedStatement preparedStatement, int paramIndex, Record obj) throws SQLException, YormException {
+        if (binder == null) {
+            rowRecordConverter.recordToRow(paramIndex, preparedStatement, dbFieldName, accessor.get(obj), type, serializer);
+            return;
+        }
+        try {
+            binder.invokeExact(preparedStatement, paramIndex, obj);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new YormException("Error while binding column:" + dbFieldName, t);
+        }
+    }
+
+    /**
+     * @return a (PreparedStatement, int, Record)void handle, or null when the value needs the serializer
+     */
+    private static MethodHandle directBinder(Method method, DbType type) throws NoSuchMethodException, IllegalAccessException {
+        Class<?> valueType = method.getReturnType();
+        MethodHandle setter = columnSetter(type);
+        if (setter == null) {
+            return null;
+        }
+        Class<?> setterType = setter.type().parameterType(2);
+        if (valueType != setterType && !valueType.isPrimitive()) {
+            return null;
+        }
+        MethodHandle getter = LOOKUP.unreflect(method);
+        try {
+            getter = getter.asType(MethodType.methodType(setterType, Record.class));
+        } catch (WrongMethodTypeException e) {
+            // A narrowing, like a long component on an INTEGER column, is left to a setter of the component type
+            setter = primitiveSetter(valueType);
+            if (setter == null) {
+                return null;
+            }
+            getter = getter.asType(MethodType.methodType(valueType, Record.class));
+        }
+        return MethodHandles.filterArguments(setter, 2, getter);
+    }
+
+    private static MethodHandle columnSetter(DbType type) throws NoSuchMethodException, IllegalAccessException {
+        return switch (type) {
+            //MySql does not have a truly boolean type, bool/boolean are a synonym of tinyint(1)
+            //Postgresql maps booleans to bits
+            case TINYINT, BIT, BOOLEAN -> statementSetter("setBoolean", boolean.class);
+            case SMALLINT, INTEGER -> statementSetter("setInt", int.class);
+            case BIGINT -> statementSetter("setLong", long.class);
+            case VARCHAR, TEXT -> statementSetter("setString", String.class);
+            case DOUBLE -> statementSetter("setDouble", double.class);
+            case FLOAT, REAL -> statementSetter("setFloat", float.class);
+            case DECIMAL -> statementSetter("setBigDecimal", BigDecimal.class);
+            case DATE -> LOOKUP.findStatic(ColumnBinder.class, "setLocalDate", MethodType.methodType(void.class, PreparedStatement.class, int.class, LocalDate.class));
+            case TIME -> LOOKUP.findStatic(ColumnBinder.class, "setLocalTime", MethodType.methodType(void.class, PreparedStatement.class, int.class, LocalTime.class));
+            case TIMESTAMP -> LOOKUP.findStatic(ColumnBinder.class, "setLocalDateTime",
+                MethodType.methodType(void.class, PreparedStatement.class, int.class, LocalDateTime.class));
+            // CHAR columns are read as strings but may be bound from chars, which the serializer takes care of
+            case CHAR -> null;
+        };
+    }
+
+    private static MethodHandle primitiveSetter(Class<?> valueType) throws NoSuchMethodException, IllegalAccessException {
+        if (valueType == long.class) {
+            return statementSetter("setLong", long.class);
+        }
+        if (valueType == double.class) {
+            return statementSetter("setDouble", double.class);
+        }
+        return null;
+    }
+
+    private static MethodHandle statementSetter(String name, Class<?> valueType) throws NoSuchMethodException, IllegalAccessException {
+        return LOOKUP.findVirtual(PreparedStatement.class, name, MethodType.methodType(void.class, int.class, valueType));
+    }
+
+    private static void setLocalDate(PreparedStatement preparedStatement, int paramIndex, LocalDate value) throws SQLException {
+        if (value == null) {
+            preparedStatement.setNull(paramIndex, Types.DATE);
+        } else {
+            preparedStatement.setDate(paramIndex, Date.valueOf(value));
+        }
+    }
+
+    private static void setLocalTime(PreparedStatement preparedStatement, int paramIndex, LocalTime value) throws SQLException {
+        if (value == null) {
+            preparedStatement.setNull(paramIndex, Types.TIME);
+        } else {
+            preparedStatement.setTime(paramIndex, Time.valueOf(value));
+        }
+    }
+
+    private static void setLocalDateTime(PreparedStatement preparedStatement, int paramIndex, LocalDateTime value) throws SQLException {
+        if (value == null) {
+            preparedStatement.setNull(paramIndex, Types.TIMESTAMP);
+        } else {
+            preparedStatement.setTimestamp(paramIndex, Timestamp.valueOf(value));
+        }
+    }
+}
@@ -1,39 +1,52 @@
 package org.yorm.util;
 
-import java.util.Arrays;
-
 public class Levenshtein {
 
     private Levenshtein() {
     }
 
     public static int calculate(String x, String y) {
-        int[][] dp = new int[x.length() + 1][y.length() + 1];
-        for (int i = 0; i <= x.length(); i++) {
-            for (int j = 0; j <= y.length(); j++) {
-                if (i == 0) {
-                    dp[i][j] = j;
-                } else if (j == 0) {
-                    dp[i][j] = i;
-                } else {
-                    dp[i][j] = min(dp[i - 1][j - 1]
-                            + costOfSubstitution(x.charAt(i - 1), y.charAt(j - 1)),
-                        dp[i - 1][j] + 1,
-                        dp[i][j - 1] + 1);
+        int limit = Math.max(x.length(), y.length());
+        return calculate(x, y, limit, new int[y.length() + 1], new int[y.length() + 1]);
+    }
+
+    /**
+     * Edit distance keeping only two rows of the matrix, in the given buffers of at least {@code y.length() + 1} elements.
+     * Gives up as soon as the distance can't be lower or equal than {@code limit}, returning {@code limit + 1}.
+     */
+    public static int calculate(String x, String y, int limit, int[] previous, int[] current) {
+        int xLength = x.length();
+        int yLength = y.length();
+        if (Math.abs(xLength - yLength) > limit) {
+            return limit + 1;
+        }
+        for (int j = 0; j <= yLength; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= xLength; i++) {
+            char xChar = x.charAt(i - 1);
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= yLength; j++) {
+                int substitution = previous[j - 1] + costOfSubstitution(xChar, y.charAt(j - 1));
+                int distance = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = distance;
+                if (distance < rowMin) {
+                    rowMin = distance;
                 }
             }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
         }
-        return dp[x.length()][y.length()];
+        return Math.min(previous[yLength], limit + 1);
     }
 
     private static int costOfSubstitution(char a, char b) {
         return a == b ? 0 : 1;
     }
 
-    private static int min(int... numbers) {
-        return Arrays.stream(numbers)
-            .min().orElse(Integer.MAX_VALUE);
-    }
-
-
 }
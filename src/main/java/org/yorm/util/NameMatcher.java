@@ -0,0 +1,57 @@
+package org.yorm.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the closest name among a fixed list of candidates, ignoring case and underscores. Exact matches are solved with a
+ * hash lookup, the rest with a bounded edit distance that stops as soon as a candidate can't beat the best one so far.
+ * Instances reuse their buffers, so they are not meant to be shared between threads.
+ */
+public class NameMatcher {
+
+    private static final int MAX_DISTANCE = 99;
+
+    private final List<String> candidates;
+    private final String[] cleanCandidates;
+    private final Map<String, String> exactMatches;
+    private int[] previous = new int[32];
+    private int[] current = new int[32];
+
+    public NameMatcher(List<String> candidates) {
+        this.candidates = List.copyOf(candidates);
+        this.cleanCandidates = new String[candidates.size()];
+        this.exactMatches = new HashMap<>(candidates.size() * 2);
+        for (int i = 0; i < cleanCandidates.length; i++) {
+            cleanCandidates[i] = cleanName(this.candidates.get(i));
+            exactMatches.putIfAbsent(cleanCandidates[i], this.candidates.get(i));
+        }
+    }
+
+    public String findClosest(String target) {
+        String cleanTarget = cleanName(target);
+        String closest = exactMatches.get(cleanTarget);
+        if (closest != null) {
+            return closest;
+        }
+        if (previous.length <= cleanTarget.length()) {
+            previous = new int[cleanTarget.length() + 1];
+            current = new int[cleanTarget.length() + 1];
+        }
+        int distance = MAX_DISTANCE + 1;
+        for (int i = 0; i < cleanCandidates.length && distance > 1; i++) {
+            int tempDist = Levenshtein.calculate(cleanCandidates[i], cleanTarget, distance - 1, previous, current);
+            if (tempDist < distance) {
+                closest = candidates.get(i);
+                distance = tempDist;
+            }
+        }
+        return closest;
+    }
+
+    public static String cleanName(String str) {
+        return str.toLowerCase(Locale.ROOT).replace("_", "");
+    }
+}
@@ -0,0 +1,171 @@
+package org.yorm.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import org.yorm.YormTuple;
+import org.yorm.exception.YormException;
+
+/**
+ * Builds records straight from the current row of a {@link ResultSet}. The canonical constructor is chained with one typed
+ * reader per column into a single {@link MethodHandle}, so columns whose type already matches the record component are
+ * passed as they are read, without boxing them into an intermediate array.
+ */
+public class RecordMaterializer {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle CONVERT;
+
+    static {
+        try {
+            CONVERT = LOOKUP.findVirtual(RowRecordConverter.Converter.class, "convert", MethodType.methodType(Object.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MethodHandle materializer;
+
+    private RecordMaterializer(MethodHandle materializer) {
+        this.materializer = materializer;
+    }
+
+    /**
+     * @param tuples sorted like the constructor parameters, and like the columns of the queries that will be read
+     */
+    public static RecordMaterializer of(Constructor<Record> constructor, List<YormTuple> tuples) throws YormException {
+        RecordMaterializer.class.getModule().addReads(constructor.getDeclaringClass().getModule());
+        try {
+            MethodHandle recordConstructor = LOOKUP.unreflectConstructor(constructor);
+            recordConstructor = recordConstructor.asType(recordConstructor.type().changeReturnType(Record.class));
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            MethodHandle[] readers = new MethodHandle[tuples.size()];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = reader(tuples.get(i), i + 1, parameterTypes[i]);
+            }
+            MethodHandle materializer = MethodHandles.filterArguments(recordConstructor, 0, readers);
+            materializer = MethodHandles.permuteArguments(materializer, MethodType.methodType(Record.class, ResultSet.class), new int[readers.length]);
+            return new RecordMaterializer(materializer);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new YormException("Couldn't build a materializer for record:" + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    public Record materialize(ResultSet rs) throws SQLException, YormException {
+        try {
+            return (Record) materializer.invokeExact(rs);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new YormException("Error while building record from row", t);
+        }
+    }
+
+    /**
+     * Reads a single column into the type of the record component of the tuple, for values that are not part of a record,
+     * like aggregates.
+     *
+     * @return the value, or null when the column is NULL
+     */
+    public static Object readValue(ResultSet rs, int columnIndex, YormTuple tuple) throws SQLException {
+        Object value = switch (tuple.type()) {
+            case TINYINT, BIT, BOOLEAN -> rs.getBoolean(columnIndex);
+            case SMALLINT, INTEGER -> rs.getInt(columnIndex);
+            case BIGINT -> rs.getLong(columnIndex);
+            case VARCHAR, CHAR, TEXT -> rs.getString(columnIndex);
+            case DOUBLE -> rs.getDouble(columnIndex);
+            case FLOAT, REAL -> rs.getFloat(columnIndex);
+            case DECIMAL -> rs.getBigDecimal(columnIndex);
+            case DATE -> getLocalDate(rs, columnIndex);
+            case TIME -> getLocalTime(rs, columnIndex);
+            case TIMESTAMP -> getLocalDateTime(rs, columnIndex);
+        };
+        return rs.wasNull() ? null : tuple.deserializer().convert(value);
+    }
+
+    private static MethodHandle reader(YormTuple tuple, int columnIndex, Class<?> parameterType) throws NoSuchMethodException, IllegalAccessException {
+        MethodHandle reader = MethodHandles.insertArguments(columnReader(tuple.type()), 1, columnIndex);
+        Class<?> readType = reader.type().returnType();
+        if (readType == parameterType) {
+            return reader;
+        }
+        MethodHandle primitiveConverter = primitiveConverter(tuple.deserializer(), parameterType);
+        if (primitiveConverter != null && readType.isPrimitive()) {
+            return MethodHandles.filterReturnValue(reader.asType(reader.type().changeReturnType(parameterType)), primitiveConverter);
+        }
+        MethodHandle converter = CONVERT.bindTo(tuple.deserializer());
+        reader = MethodHandles.filterReturnValue(reader.asType(reader.type().changeReturnType(Object.class)), converter);
+        return reader.asType(reader.type().changeReturnType(parameterType));
+    }
+
+    private static MethodHandle primitiveConverter(RowRecordConverter.Converter<?> converter, Class<?> parameterType)
+        throws NoSuchMethodException, IllegalAccessException {
+        if (parameterType == boolean.class && converter instanceof RowRecordConverter.BooleanConverter) {
+            return converterMethod(RowRecordConverter.BooleanConverter.class, "convertBoolean", boolean.class).bindTo(converter);
+        }
+        if (parameterType == int.class && converter instanceof RowRecordConverter.IntConverter) {
+            return converterMethod(RowRecordConverter.IntConverter.class, "convertInt", int.class).bindTo(converter);
+        }
+        if (parameterType == long.class && converter instanceof RowRecordConverter.LongConverter) {
+            return converterMethod(RowRecordConverter.LongConverter.class, "convertLong", long.class).bindTo(converter);
+        }
+        if (parameterType == float.class && converter instanceof RowRecordConverter.FloatConverter) {
+            return converterMethod(RowRecordConverter.FloatConverter.class, "convertFloat", float.class).bindTo(converter);
+        }
+        if (parameterType == double.class && converter instanceof RowRecordConverter.DoubleConverter) {
+            return converterMethod(RowRecordConverter.DoubleConverter.class, "convertDouble", double.class).bindTo(converter);
+        }
+        return null;
+    }
+
+    private static MethodHandle converterMethod(Class<?> converterClass, String name, Class<?> primitiveType)
+        throws NoSuchMethodException, IllegalAccessException {
+        return LOOKUP.findVirtual(converterClass, name, MethodType.methodType(primitiveType, primitiveType));
+    }
+
+    private static MethodHandle columnReader(DbType type) throws NoSuchMethodException, IllegalAccessException {
+        return switch (type) {
+            //MySql does not have a truly boolean type, bool/boolean are a synonym of tinyint(1)
+            case TINYINT, BIT, BOOLEAN -> resultSetGetter("getBoolean", boolean.class);
+            case SMALLINT, INTEGER -> resultSetGetter("getInt", int.class);
+            case BIGINT -> resultSetGetter("getLong", long.class);
+            case VARCHAR, CHAR, TEXT -> resultSetGetter("getString", String.class);
+            case DOUBLE -> resultSetGetter("getDouble", double.class);
+            case FLOAT, REAL -> resultSetGetter("getFloat", float.class);
+            case DECIMAL -> resultSetGetter("getBigDecimal", BigDecimal.class);
+            case DATE -> LOOKUP.findStatic(RecordMaterializer.class, "getLocalDate", MethodType.methodType(LocalDate.class, ResultSet.class, int.class));
+            case TIME -> LOOKUP.findStatic(RecordMaterializer.class, "getLocalTime", MethodType.methodType(LocalTime.class, ResultSet.class, int.class));
+            case TIMESTAMP -> LOOKUP.findStatic(RecordMaterializer.class, "getLocalDateTime", MethodType.methodType(LocalDateTime.class, ResultSet.class, int.class));
+        };
+    }
+
+    private static MethodHandle resultSetGetter(String name, Class<?> returnType) throws NoSuchMethodException, IllegalAccessException {
+        return LOOKUP.findVirtual(ResultSet.class, name, MethodType.methodType(returnType, int.class));
+    }
+
+    private static LocalDate getLocalDate(ResultSet rs, int columnIndex) throws SQLException {
+        Date date = rs.getDate(columnIndex);
+        return date == null ? null : date.toLocalDate();
+    }
+
+    private static LocalTime getLocalTime(ResultSet rs, int columnIndex) throws SQLException {
+        Time time = rs.getTime(columnIndex);
+        return time == null ? null : time.toLocalTime();
+    }
+
+    private static LocalDateTime getLocalDateTime(ResultSet rs, int columnIndex) throws SQLException {
+        Timestamp ts = rs.getTimestamp(columnIndex);
+        return ts == null ? null : ts.toLocalDateTime();
+    }
+}
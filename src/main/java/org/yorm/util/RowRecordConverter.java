@@ -1,8 +1,5 @@
 package org.yorm.util;
 
-import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.PreparedStatement;
@@ -13,6 +10,7 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.HashMap;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,15 +20,21 @@ public class RowRecordConverter {
 
     private static final Logger logger = LoggerFactory.getLogger(RowRecordConverter.class);
 
+    private static final BooleanConverter BOOLEAN_CONVERTER = input -> input;
+    private static final IntConverter INT_CONVERTER = input -> input;
+    private static final LongConverter LONG_CONVERTER = input -> input;
+    private static final FloatConverter FLOAT_CONVERTER = input -> input;
+    private static final DoubleConverter DOUBLE_CONVERTER = input -> input;
+
     private static final Map<Class<?>, Converter<?>> PASS_THROUGH_CONVERTERS = Map.ofEntries(
-        Map.entry(boolean.class, input -> input),
+        Map.entry(boolean.class, BOOLEAN_CONVERTER),
         Map.entry(byte.class, input -> input),
         Map.entry(char.class, input -> input),
         Map.entry(short.class, input -> input),
-        Map.entry(int.class, input -> input),
-        Map.entry(long.class, input -> input),
-        Map.entry(float.class, input -> input),
-        Map.entry(double.class, input -> input),
+        Map.entry(int.class, INT_CONVERTER),
+        Map.entry(long.class, LONG_CONVERTER),
+        Map.entry(float.class, FLOAT_CONVERTER),
+        Map.entry(double.class, DOUBLE_CONVERTER),
         Map.entry(Boolean.class, input -> input),
         Map.entry(Byte.class, input -> (byte) input),
         Map.entry(Character.class, input -> (char) input),
@@ -54,6 +58,38 @@ public class RowRecordConverter {
 
     private static final Converter<String> TO_STRING_CONVERTER = input -> input.toString();
 
+    private static final Map<Class<?>, Class<?>> PRIMITIVE_WRAPPERS = Map.ofEntries(
+        Map.entry(boolean.class, Boolean.class),
+        Map.entry(byte.class, Byte.class),
+        Map.entry(char.class, Character.class),
+        Map.entry(short.class, Short.class),
+        Map.entry(int.class, Integer.class),
+        Map.entry(long.class, Long.class),
+        Map.entry(float.class, Float.class),
+        Map.entry(double.class, Double.class),
+        Map.entry(Boolean.class, boolean.class),
+        Map.entry(Byte.class, byte.class),
+        Map.entry(Character.class, char.class),
+        Map.entry(Short.class, short.class),
+        Map.entry(Integer.class, int.class),
+        Map.entry(Long.class, long.class),
+        Map.entry(Float.class, float.class),
+        Map.entry(Double.class, double.class)
+    );
+
+    // values() clones its array on every call and valueOf() goes through a reflective lookup, so both are computed once per enum
+    private static final ClassValue<EnumConstants> ENUM_CONSTANTS = new ClassValue<>() {
+        @Override
+        protected EnumConstants computeValue(Class<?> enumClass) {
+            Object[] constants = enumClass.getEnumConstants();
+            Map<String, Object> constantsByName = new HashMap<>(constants.length * 2);
+            for (Object constant : constants) {
+                constantsByName.put(((Enum<?>) constant).name(), constant);
+            }
+            return new EnumConstants(constants, constantsByName);
+        }
+    };
+
 
     public static <OutputType> Converter<OutputType> converterFor(Class<?> inputTypeClass, Class<OutputType> outputTypeClass) {
         if (logger.isDebugEnabled()) {
@@ -67,10 +103,14 @@ public class RowRecordConverter {
                 return outputTypeClass::cast;
             }
         }
+        if (isPrimitiveWidening(inputTypeClass, outputTypeClass)) {
+            //noinspection unchecked
+            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(outputTypeClass);
+        }
         if (outputTypeClass.isEnum() && inputTypeClass == String.class) {
             return enumFromString(outputTypeClass);
         }
-        if (outputTypeClass.isEnum() && inputTypeClass == char.class) {
+        if (outputTypeClass.isEnum() && ENUM_SERIALIZERS.containsKey(inputTypeClass)) {
             return enumFromOrdinal(outputTypeClass);
         }
         if (inputTypeClass.isEnum()) {
@@ -81,73 +121,13 @@ public class RowRecordConverter {
             //noinspection unchecked
             return (Converter<OutputType>) TO_STRING_CONVERTER;
         }
-        // YUCK!
-        if (inputTypeClass.equals(Boolean.class) && outputTypeClass.equals(boolean.class)) {
+        if (PRIMITIVE_WRAPPERS.get(inputTypeClass) == outputTypeClass || PRIMITIVE_WRAPPERS.get(outputTypeClass) == inputTypeClass) {
             //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Boolean.class);
-        }
-        if (inputTypeClass.equals(boolean.class) && outputTypeClass.equals(Boolean.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(boolean.class);
-        }
-        if (inputTypeClass.equals(Byte.class) && outputTypeClass.equals(byte.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Byte.class);
-        }
-        if (inputTypeClass.equals(byte.class) && outputTypeClass.equals(Byte.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(byte.class);
-        }
-        if (inputTypeClass.equals(Character.class) && outputTypeClass.equals(char.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Character.class);
-        }
-        if (inputTypeClass.equals(char.class) && outputTypeClass.equals(Character.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(char.class);
+            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(inputTypeClass);
         }
         if (inputTypeClass == String.class && outputTypeClass == char.class) {
-            return (Converter<OutputType>) TO_STRING_CONVERTER;
-        }
-        if (inputTypeClass.equals(Short.class) && outputTypeClass.equals(short.class)) {
             //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Short.class);
-        }
-        if (inputTypeClass.equals(short.class) && outputTypeClass.equals(Short.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(short.class);
-        }
-        if (inputTypeClass.equals(Integer.class) && outputTypeClass.equals(int.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Integer.class);
-        }
-        if (inputTypeClass.equals(int.class) && outputTypeClass.equals(Integer.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(int.class);
-        }
-        if (inputTypeClass.equals(Long.class) && outputTypeClass.equals(long.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Long.class);
-        }
-        if (inputTypeClass.equals(long.class) && outputTypeClass.equals(Long.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(long.class);
-        }
-        if (inputTypeClass.equals(Float.class) && outputTypeClass.equals(float.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Float.class);
-        }
-        if (inputTypeClass.equals(float.class) && outputTypeClass.equals(Float.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(float.class);
-        }
-        if (inputTypeClass.equals(Double.class) && outputTypeClass.equals(double.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(Double.class);
-        }
-        if (inputTypeClass.equals(double.class) && outputTypeClass.equals(Double.class)) {
-            //noinspection unchecked
-            return (Converter<OutputType>) PASS_THROUGH_CONVERTERS.get(double.class);
+            return (Converter<OutputType>) TO_STRING_CONVERTER;
         }
         throw new RuntimeException(String.format(
             "No deserializer found for %s to %s. You should file a bug to let us know what we need to add!",
@@ -155,83 +135,43 @@ public class RowRecordConverter {
         ));
     }
 
-    // TODO: Cache for each enum type? I could imagine times when we'd be calling this a lot for the same thing.
-    private static <OutputType> Converter<OutputType> enumFromOrdinal(Class<OutputType> outputTypeClass) {
-        try {
-            MethodHandle methodHandle = MethodHandles
-                .lookup()
-                .findStatic(
-                    outputTypeClass,
-                    "values",
-                    MethodType.methodType(
-                        // Like typing MyEnum[].class.
-                        java.lang.reflect.Array.newInstance(outputTypeClass, 0).getClass()
-                    )
-                );
-            return input -> {
-                try {
-                    // noinspection unchecked
-                    return (OutputType) ((OutputType[]) methodHandle.invokeExact())[(int) input];
-                } catch (IllegalArgumentException e) {
-                    // Rethrow real errors...
-                    throw e;
-                } catch (Throwable e) {
-                    // This should never happen, but let's give helpful output just in case weird stuff goes down!
-                    throw new IllegalStateException(
-                        String.format(
-                            "Unexpected exception invoking %s.value()[%d].",
-                            outputTypeClass.getName(),
-                            (int) input
-                        ),
-                        e
-                    );
-                }
-            };
-        } catch (NoSuchMethodException | IllegalAccessException e) {
-            // Again... This should never happen, but let's give helpful output just in case weird stuff goes down!
-            throw new IllegalStateException(
-                String.format("Unexpected exception finding %s.value()[] method.", outputTypeClass.getName()),
-                e
-            );
+    /**
+     * Record values are never narrowed to the type of their column, like a long on an INTEGER column. They keep their type
+     * and are bound with its own setter, so they are passed through. Columns are never narrowed into records either, which
+     * is why this only applies to serializers.
+     *
+     * @return the pass through converter, or null when the column type isn't narrower
+     */
+    public static Converter<?> narrowingSerializer(Class<?> recordTypeClass, Class<?> columnTypeClass) {
+        return isPrimitiveWidening(columnTypeClass, recordTypeClass) ? PASS_THROUGH_CONVERTERS.get(recordTypeClass) : null;
+    }
+
+    private static boolean isPrimitiveWidening(Class<?> inputTypeClass, Class<?> outputTypeClass) {
+        if (inputTypeClass == int.class) {
+            return outputTypeClass == long.class || outputTypeClass == float.class || outputTypeClass == double.class;
+        }
+        if (inputTypeClass == long.class || inputTypeClass == float.class) {
+            return outputTypeClass == double.class;
         }
+        return false;
+    }
+
+    private static <OutputType> Converter<OutputType> enumFromOrdinal(Class<OutputType> outputTypeClass) {
+        Object[] constants = ENUM_CONSTANTS.get(outputTypeClass).constants();
+        //noinspection unchecked
+        return input -> input == null ? null : (OutputType) constants[input instanceof Character c ? c : ((Number) input).intValue()];
     }
 
-    // TODO: Cache for each enum type? I could imagine times when we'd be calling this a lot for the same thing.
     private static <OutputType> Converter<OutputType> enumFromString(Class<OutputType> outputTypeClass) {
-        try {
-            MethodHandle methodHandle = MethodHandles
-                .lookup()
-                .findStatic(
-                    outputTypeClass,
-                    "valueOf",
-                    MethodType.methodType(outputTypeClass, String.class)
-                );
-            return input -> {
-                try {
-                    // noinspection unchecked
-                    return (OutputType) methodHandle.invoke((String) input);
-                } catch (IllegalArgumentException e) {
-                    // Rethrow real errors...
-                    throw e;
-                } catch (Throwable e) {
-                    // This should never happen, but let's give helpful output just in case weird stuff goes down!
-                    throw new IllegalStateException(
-                        String.format(
-                            "Unexpected exception invoking %s.valueOf(\"%s\").",
-                            outputTypeClass.getName(),
-                            (String) input
-                        ),
-                        e
-                    );
-                }
-            };
-        } catch (NoSuchMethodException | IllegalAccessException e) {
-            // Again... This should never happen, but let's give helpful output just in case weird stuff goes down!
-            throw new IllegalStateException(
-                String.format("Unexpected exception finding %s.valueOf() method.", outputTypeClass.getName()),
-                e
-            );
-        }
+        Map<String, Object> constantsByName = ENUM_CONSTANTS.get(outputTypeClass).constantsByName();
+        return input -> {
+            Object constant = constantsByName.get((String) input);
+            if (constant == null && input != null) {
+                throw new IllegalArgumentException("No enum constant " + outputTypeClass.getName() + "." + input);
+            }
+            //noinspection unchecked
+            return (OutputType) constant;
+        };
     }
 
     public void recordToRow(
@@ -271,59 +211,112 @@ public class RowRecordConverter {
         ResultSet rs,
         Object[] values,
         int params,
-        String dbColumnName,
+        int columnIndex,
         DbType type,
         Converter<?> converter
     ) throws SQLException, YormException {
         switch (type) {
             case TINYINT, BIT, BOOLEAN -> {
                 //MySql does not have a truly boolean type, bool/boolean are a synonym of tinyint(1)
-                boolean tiny = rs.getBoolean(dbColumnName);
+                boolean tiny = rs.getBoolean(columnIndex);
                 values[params++] = converter.convert(tiny);
             }
             case SMALLINT, INTEGER -> {
-                int ii = rs.getInt(dbColumnName);
+                int ii = rs.getInt(columnIndex);
                 values[params++] = converter.convert(ii);
             }
             case BIGINT -> {
-                long ll = rs.getLong(dbColumnName);
+                long ll = rs.getLong(columnIndex);
                 values[params++] = converter.convert(ll);
             }
             case VARCHAR, CHAR, TEXT -> {
-                String str = rs.getString(dbColumnName);
+                String str = rs.getString(columnIndex);
                 values[params++] = converter.convert(str);
             }
             case DOUBLE -> {
-                double dd = rs.getDouble(dbColumnName);
+                double dd = rs.getDouble(columnIndex);
                 values[params++] = converter.convert(dd);
             }
             case FLOAT, REAL -> {
-                float ff = rs.getFloat(dbColumnName);
+                float ff = rs.getFloat(columnIndex);
                 values[params++] = converter.convert(ff);
             }
             case DECIMAL -> {
-                BigDecimal bb = rs.getBigDecimal(dbColumnName);
+                BigDecimal bb = rs.getBigDecimal(columnIndex);
                 values[params++] = converter.convert(bb);
             }
             case DATE -> {
-                Date date = rs.getDate(dbColumnName);
+                Date date = rs.getDate(columnIndex);
                 values[params++] = converter.convert(date.toLocalDate());
             }
             case TIME -> {
-                Time time = rs.getTime(dbColumnName);
+                Time time = rs.getTime(columnIndex);
                 values[params++] = converter.convert(time.toLocalTime());
             }
             case TIMESTAMP -> {
-                Timestamp ts = rs.getTimestamp(dbColumnName);
+                Timestamp ts = rs.getTimestamp(columnIndex);
                 values[params++] = converter.convert(ts.toLocalDateTime());
             }
-            default -> throw new YormException("Couldn't find type for " + dbColumnName);
+            default -> throw new YormException("Couldn't find type for column " + columnIndex);
         }
         return params;
     }
 
+    private record EnumConstants(Object[] constants, Map<String, Object> constantsByName) {
+
+    }
+
     public interface Converter<OutputType> {
 
         OutputType convert(Object input);
     }
+
+    /**
+     * Converters between primitives, which can be chained without boxing the values. The boxed {@link #convert(Object)} is
+     * kept for the generic paths.
+     */
+    public interface BooleanConverter extends Converter<Boolean> {
+
+        boolean convertBoolean(boolean input);
+
+        default Boolean convert(Object input) {
+            return convertBoolean((boolean) input);
+        }
+    }
+
+    public interface IntConverter extends Converter<Integer> {
+
+        int convertInt(int input);
+
+        default Integer convert(Object input) {
+            return convertInt(((Number) input).intValue());
+        }
+    }
+
+    public interface LongConverter extends Converter<Long> {
+
+        long convertLong(long input);
+
+        default Long convert(Object input) {
+            return convertLong(((Number) input).longValue());
+        }
+    }
+
+    public interface FloatConverter extends Converter<Float> {
+
+        float convertFloat(float input);
+
+        default Float convert(Object input) {
+            return convertFloat(((Number) input).floatValue());
+        }
+    }
+
+    public interface DoubleConverter extends Converter<Double> {
+
+        double convertDouble(double input);
+
+        default Double convert(Object input) {
+            return convertDouble(((Number) input).doubleValue());
+        }
+    }
 }
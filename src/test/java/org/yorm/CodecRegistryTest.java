@@ -0,0 +1,57 @@
+package org.yorm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.yorm.exception.YormException;
+import org.yorm.records.CompanyType;
+import org.yorm.util.CodecRegistry;
+import org.yorm.util.RowRecordConverter.Converter;
+
+class CodecRegistryTest {
+
+    @Test
+    void reuseBuiltInConverters() throws YormException {
+        CodecRegistry registry = new CodecRegistry();
+        Converter<?> fromString = registry.converterFor(String.class, CompanyType.class);
+        assertSame(fromString, registry.converterFor(String.class, CompanyType.class));
+        assertEquals(CompanyType.NOT_GREEDY, fromString.convert("NOT_GREEDY"));
+        assertEquals(CompanyType.GREEDY, registry.converterFor(int.class, CompanyType.class).convert(0));
+        assertEquals("GREEDY", registry.converterFor(CompanyType.class, String.class).convert(CompanyType.GREEDY));
+        assertThrows(IllegalArgumentException.class, () -> fromString.convert("UNKNOWN"));
+    }
+
+    @Test
+    void useRegisteredCodecs() throws YormException {
+        CodecRegistry registry = new CodecRegistry();
+        registry.register(UUID.class, String.class, UUID::toString, UUID::fromString);
+        registry.register(Money.class, long.class, Money::cents, Money::new);
+        UUID uuid = UUID.randomUUID();
+        assertEquals(uuid.toString(), registry.converterFor(UUID.class, String.class).convert(uuid));
+        assertEquals(uuid, registry.converterFor(String.class, UUID.class).convert(uuid.toString()));
+        assertNull(registry.converterFor(String.class, UUID.class).convert(null));
+        assertEquals(1250L, registry.converterFor(Money.class, long.class).convert(new Money(1250)));
+        assertEquals(new Money(1250), registry.converterFor(long.class, Money.class).convert(1250L));
+    }
+
+    @Test
+    void narrowOnlyIntoColumns() throws YormException {
+        CodecRegistry registry = new CodecRegistry();
+        assertEquals(5_000_000_000L, registry.serializerFor(long.class, int.class).convert(5_000_000_000L));
+        assertThrows(YormException.class, () -> registry.converterFor(long.class, int.class));
+    }
+
+    @Test
+    void failOnUnknownTypes() {
+        CodecRegistry registry = new CodecRegistry();
+        assertThrows(YormException.class, () -> registry.converterFor(String.class, UUID.class));
+    }
+
+    record Money(long cents) {
+
+    }
+}
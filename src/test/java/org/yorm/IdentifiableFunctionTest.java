@@ -0,0 +1,39 @@
+package org.yorm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.yorm.records.Person;
+
+class IdentifiableFunctionTest {
+
+    @Test
+    void resolveGetterNames() {
+        assertEquals("companyId", name(Person::companyId));
+        assertEquals("email", name(Person::email));
+        assertEquals("companyId", name(Person::companyId));
+    }
+
+    @Test
+    void resolveGetterNamesConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> calls = IntStream.range(0, 64).<Callable<String>>mapToObj(i -> () -> name(Person::lastLogin)).toList();
+            for (Future<String> result : executor.invokeAll(calls)) {
+                assertEquals("lastLogin", result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static <U> String name(IdentifiableFunction<Person, U> getter) {
+        return getter.getCallingFunctionName();
+    }
+}
@@ -0,0 +1,98 @@
+package org.yorm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yorm.util.Levenshtein;
+import org.yorm.util.NameMatcher;
+
+/**
+ * Matches record names against large synthetic catalogs. Run it with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameMatcherBenchmark {
+
+    @Param({"500", "5000"})
+    private int catalogSize;
+
+    private List<String> catalog;
+    private NameMatcher matcher;
+    private String exactTarget;
+    private String fuzzyTarget;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        catalog = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            catalog.add(randomTableName(random));
+        }
+        matcher = new NameMatcher(catalog);
+        exactTarget = catalog.get(catalogSize / 2).replace("_", "").toUpperCase();
+        fuzzyTarget = catalog.get(catalogSize / 3) + "s";
+    }
+
+    @Benchmark
+    public String exactMatch() {
+        return matcher.findClosest(exactTarget);
+    }
+
+    @Benchmark
+    public String fuzzyMatch() {
+        return matcher.findClosest(fuzzyTarget);
+    }
+
+    @Benchmark
+    public String fullLevenshteinScan() {
+        String closest = null;
+        int distance = 100;
+        String target = NameMatcher.cleanName(fuzzyTarget);
+        for (String table : catalog) {
+            int tempDist = Levenshtein.calculate(NameMatcher.cleanName(table), target);
+            if (tempDist < distance) {
+                closest = table;
+                distance = tempDist;
+            }
+        }
+        return closest;
+    }
+
+    private static String randomTableName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                name.append('_');
+            }
+            int length = 3 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return name.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NameMatcherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,55 @@
+package org.yorm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.yorm.util.Levenshtein;
+import org.yorm.util.NameMatcher;
+import org.junit.jupiter.api.Test;
+
+class NameMatcherTest {
+
+    @Test
+    void findExactMatchIgnoringCaseAndUnderscores() {
+        NameMatcher matcher = new NameMatcher(List.of("company", "history_annotation", "person", "person_company"));
+        assertEquals("history_annotation", matcher.findClosest("historyannotation"));
+        assertEquals("person_company", matcher.findClosest("PersonCompany"));
+        assertEquals("person", matcher.findClosest("person"));
+    }
+
+    @Test
+    void findClosestByEditDistance() {
+        NameMatcher matcher = new NameMatcher(List.of("id", "name", "email", "lastLogin", "companyId"));
+        assertEquals("lastLogin", matcher.findClosest("last_login_date"));
+        assertEquals("companyId", matcher.findClosest("company"));
+        assertEquals("email", matcher.findClosest("mail"));
+    }
+
+    @Test
+    void keepFirstCandidateOnTies() {
+        NameMatcher matcher = new NameMatcher(List.of("ab", "ba", "Ab"));
+        assertEquals("ab", matcher.findClosest("AB"));
+        assertEquals("ab", matcher.findClosest("aa"));
+    }
+
+    @Test
+    void noCandidates() {
+        assertNull(new NameMatcher(List.of()).findClosest("person"));
+    }
+
+    @Test
+    void boundedDistanceMatchesFullDistance() {
+        String[] words = {"", "a", "person", "persona", "company_id", "companyid", "kitten", "sitting", "flaw", "lawn"};
+        int[] previous = new int[32];
+        int[] current = new int[32];
+        for (String x : words) {
+            for (String y : words) {
+                int distance = Levenshtein.calculate(x, y);
+                assertEquals(distance, Levenshtein.calculate(x, y, 20, previous, current));
+                assertEquals(Math.min(distance, 2), Levenshtein.calculate(x, y, 1, previous, current));
+            }
+        }
+        assertEquals(3, Levenshtein.calculate("kitten", "sitting"));
+    }
+}
@@ -1,5 +1,6 @@
 package org.yorm;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
@@ -8,17 +9,27 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.simple.SimpleLogger;
+import org.yorm.db.operations.QuerySave;
+import org.yorm.db.operations.operators.SortOrder;
 import org.yorm.exception.YormException;
 import org.yorm.records.*;
 import org.yorm.util.DbType;
@@ -118,7 +129,7 @@ class YormMySqlTest {
         Person person2 = new Person(3, "Harry", "harry.potter@hogwarts.com", localDateTime, 1);
         Person person3 = new Person(4, "Sauron", "sauron@mordor.com", localDateTime, 2);
         List<Person> list = List.of(person1, person2, person3);
-        yorm.insert(list);
+        assertArrayEquals(new long[]{2, 3, 4}, yorm.insert(list));
         List<Person> personList = yorm.find(Person.class);
         assertNotNull(personList);
         assertEquals(4, personList.size());
@@ -285,4 +296,251 @@ class YormMySqlTest {
         assertTrue(list.stream().filter(pc->!pc.isActive()).findAny().isEmpty());
     }
 
+    @Test
+    @Order(18)
+    void preload() throws YormException {
+        Yorm preloadedYorm = new Yorm(ds);
+        preloadedYorm.preload(Person.class, Company.class, HistoryAnnotation.class, PersonCompany.class);
+        List<Person> personList = preloadedYorm.find(Person.class);
+        assertEquals(3, personList.size());
+        Company hogwarts = preloadedYorm.find(Company.class, 1);
+        assertEquals("Hogwarts", hogwarts.name());
+        assertEquals(2, preloadedYorm.find(HistoryAnnotation.class).size());
+    }
+
+    @Test
+    @Order(19)
+    void mappingSnapshot(@TempDir Path tempDir) throws YormException {
+        Path snapshot = tempDir.resolve("yorm.snapshot");
+        yorm.saveSnapshot(snapshot);
+        Yorm snapshotYorm = new Yorm(ds);
+        CompletableFuture<Void> validation = snapshotYorm.loadSnapshot(snapshot);
+        Person person = snapshotYorm.find(Person.class, 2);
+        assertEquals("Hermione", person.name());
+        validation.join();
+        assertEquals(3, snapshotYorm.find(Person.class).size());
+    }
+
+    @Test
+    @Order(20)
+    void refreshMapping() throws YormException {
+        Person before = yorm.find(Person.class, 2);
+        yorm.refresh(Person.class);
+        assertEquals(before, yorm.find(Person.class, 2));
+        yorm.invalidate(Company.class);
+        assertEquals("Hogwarts", yorm.find(Company.class, 1).name());
+        yorm.refreshAll();
+        assertEquals(3, yorm.find(Person.class).size());
+    }
+
+    @Test
+    @Order(21)
+    void stream() throws YormException {
+        try (Stream<Person> persons = yorm.stream(Person.class)) {
+            assertEquals(3, persons.count());
+        }
+        try (Stream<Person> persons = yorm.from(Person.class).where(Person::companyId).equalTo(1).stream()) {
+            assertEquals(List.of("Harry", "Hermione"), persons.map(Person::name).sorted().toList());
+        }
+    }
+
+    @Test
+    @Order(22)
+    void paging() throws YormException {
+        List<Person> firstPage = yorm.from(Person.class).after(Person::id, 0).limit(2).find();
+        assertEquals(List.of(2, 3), firstPage.stream().map(Person::id).toList());
+        List<Person> secondPage = yorm.from(Person.class).after(Person::id, firstPage.get(1).id()).limit(2).find();
+        assertEquals(List.of(4), secondPage.stream().map(Person::id).toList());
+        List<Person> filteredPage = yorm.from(Person.class).where(Person::companyId).equalTo(1).or(Person::companyId).equalTo(2)
+            .after(Person::id, 2).limit(1).find();
+        assertEquals(List.of(3), filteredPage.stream().map(Person::id).toList());
+        assertEquals(2, yorm.from(Person.class).offset(1).find().size());
+        assertEquals(1, yorm.from(Person.class).limit(1).offset(2).find().size());
+        // Hermione and Harry share the company at the boundary of the first page, the id breaks the tie
+        List<Person> firstByCompany = yorm.from(Person.class).orderBy(Person::companyId).orderBy(Person::id).limit(1).find();
+        assertEquals(List.of(2), firstByCompany.stream().map(Person::id).toList());
+        List<Person> secondByCompany = yorm.from(Person.class).after(firstByCompany.get(0), Person::companyId).limit(1).find();
+        assertEquals(List.of(3), secondByCompany.stream().map(Person::id).toList());
+        List<Person> lastByCompany = yorm.from(Person.class).after(secondByCompany.get(0), Person::companyId).limit(2).find();
+        assertEquals(List.of(4), lastByCompany.stream().map(Person::id).toList());
+        assertThrows(YormException.class, () -> yorm.from(Person.class).after(Person::companyId, 1));
+    }
+
+    @Test
+    @Order(23)
+    void orderBy() throws YormException {
+        List<Person> byName = yorm.from(Person.class).orderBy(Person::name).find();
+        assertEquals(List.of("Harry", "Hermione", "Sauron"), byName.stream().map(Person::name).toList());
+        List<Person> lastTwo = yorm.from(Person.class).orderBy(Person::id, SortOrder.DESC).limit(2).find();
+        assertEquals(List.of(4, 3), lastTwo.stream().map(Person::id).toList());
+        List<Person> byCompany = yorm.from(Person.class).orderBy(Person::companyId, SortOrder.DESC).orderBy(Person::name).find();
+        assertEquals(List.of("Sauron", "Harry", "Hermione"), byCompany.stream().map(Person::name).toList());
+        List<Person> previousPage = yorm.from(Person.class).orderBy(Person::id, SortOrder.DESC).after(Person::id, 4).limit(1).find();
+        assertEquals(List.of(3), previousPage.stream().map(Person::id).toList());
+    }
+
+    @Test
+    @Order(24)
+    void projection() throws YormException {
+        List<PersonSummary> summaries = yorm.from(Person.class).where(Person::companyId).equalTo(1).orderBy(Person::name)
+            .select(PersonSummary.class)
+            .find();
+        assertEquals(List.of(new PersonSummary(3, "Harry"), new PersonSummary(2, "Hermione")), summaries);
+        List<PersonSummary> sauron = yorm.from(Person.class).select(PersonSummary.class).where(PersonSummary::name).equalTo("Sauron").find();
+        assertEquals(List.of(new PersonSummary(4, "Sauron")), sauron);
+    }
+
+    @Test
+    @Order(25)
+    void aggregates() throws YormException {
+        assertEquals(3, yorm.from(Person.class).count());
+        assertEquals(2, yorm.from(Person.class).where(Person::companyId).equalTo(1).count());
+        assertTrue(yorm.from(Person.class).where(Person::name).equalTo("Sauron").exists());
+        assertFalse(yorm.from(Person.class).where(Person::name).equalTo("Voldemort").exists());
+        assertEquals(9L, yorm.from(Person.class).sum(Person::id));
+        assertEquals(2, yorm.from(Person.class).min(Person::id));
+        assertEquals(4, yorm.from(Person.class).max(Person::id));
+        assertEquals(2.5, yorm.from(Person.class).where(Person::companyId).equalTo(1).avg(Person::id));
+        assertEquals(0L, yorm.from(Person.class).where(Person::companyId).equalTo(3).sum(Person::id));
+        assertNull(yorm.from(Person.class).where(Person::companyId).equalTo(3).max(Person::id));
+        assertEquals("Harry", yorm.from(Person.class).min(Person::name));
+        assertEquals(yorm.find(Company.class, 1).date(), yorm.from(Company.class).where(Company::id).equalTo(1).max(Company::date));
+    }
+
+    @Test
+    @Order(26)
+    void insertListInChunks() throws YormException {
+        yorm.setInsertChunkSize(2);
+        LocalDate date = LocalDate.of(1995, 3, 1);
+        List<Company> list = List.of(
+            new Company(0, "Beauxbatons", "FR", date, 0f, true, CompanyType.NOT_GREEDY, false),
+            new Company(10, "Durmstrang", "NO", date, 0f, true, CompanyType.NOT_GREEDY, false),
+            new Company(0, "Gringotts", "GB", date, 0f, true, CompanyType.GREEDY, false),
+            new Company(0, "Isengard", "ZZ", date, 0f, false, CompanyType.GREEDY, true));
+        long[] ids = yorm.insert(list);
+        yorm.setInsertChunkSize(QuerySave.DEFAULT_CHUNK_SIZE);
+        assertArrayEquals(new long[]{3, 10, 4, 5}, ids);
+        assertEquals("Gringotts", yorm.find(Company.class, 4).name());
+        assertEquals(6, yorm.find(Company.class).size());
+        for (long id : ids) {
+            assertTrue(yorm.delete(Company.class, id));
+        }
+    }
+
+    @Test
+    @Order(27)
+    void saveAndUpdateLists() throws YormException {
+        Company hogwarts = yorm.find(Company.class, 1);
+        Company changed = new Company(1, hogwarts.name(), hogwarts.countryCode(), hogwarts.date(), 99.5f, hogwarts.isActive(), hogwarts.companyType(),
+            hogwarts.isEvil());
+        Company created = new Company(0, "Gringotts", "GB", LocalDate.of(1500, 1, 1), 0f, true, CompanyType.GREEDY, false);
+        long[] ids = yorm.saveAll(List.of(changed, created));
+        assertEquals(1, ids[0]);
+        assertTrue(ids[1] > 2);
+        assertEquals(99.5f, yorm.find(Company.class, 1).debt());
+        assertEquals("Gringotts", yorm.find(Company.class, ids[1]).name());
+        yorm.update(List.of(hogwarts));
+        assertEquals(hogwarts, yorm.find(Company.class, 1));
+        assertTrue(yorm.delete(Company.class, ids[1]));
+    }
+
+    @Test
+    @Order(28)
+    void findAndDeleteByIds() throws YormException {
+        Map<Long, Person> persons = yorm.findByIds(Person.class, new long[]{2, 4, 99});
+        assertEquals(2, persons.size());
+        assertEquals("Hermione", persons.get(2L).name());
+        assertEquals("Sauron", persons.get(4L).name());
+        LocalDate date = LocalDate.of(1995, 3, 1);
+        long[] ids = yorm.insert(List.of(
+            new Company(0, "Beauxbatons", "FR", date, 0f, true, CompanyType.NOT_GREEDY, false),
+            new Company(0, "Durmstrang", "NO", date, 0f, true, CompanyType.NOT_GREEDY, false),
+            new Company(0, "Gringotts", "GB", date, 0f, true, CompanyType.GREEDY, false)));
+        assertEquals(3, yorm.findByIds(Company.class, ids).size());
+        assertEquals(3, yorm.delete(Company.class, new long[]{ids[0], ids[1], ids[2], 99}));
+        assertTrue(yorm.findByIds(Company.class, ids).isEmpty());
+        assertEquals(0, yorm.delete(Company.class, new long[0]));
+    }
+
+    @Test
+    @Order(29)
+    void upsertRecords() throws YormException {
+        Person harry = yorm.find(Person.class, 3);
+        Person renamed = new Person(3, "Harry James", harry.email(), harry.lastLogin(), harry.companyId());
+        assertEquals(3, yorm.upsert(renamed));
+        assertEquals("Harry James", yorm.find(Person.class, 3).name());
+        LocalDate date = LocalDate.of(1995, 3, 1);
+        Company beauxbatons = new Company(20, "Beauxbatons", "FR", date, 0f, true, CompanyType.NOT_GREEDY, false);
+        assertEquals(20, yorm.upsert(beauxbatons));
+        assertEquals("Beauxbatons", yorm.find(Company.class, 20).name());
+        Company renamedBeauxbatons = new Company(20, "Beauxbatons Academy", "FR", date, 0f, true, CompanyType.NOT_GREEDY, false);
+        Company durmstrang = new Company(21, "Durmstrang", "NO", date, 0f, true, CompanyType.NOT_GREEDY, false);
+        assertArrayEquals(new long[]{20, 21}, yorm.upsertAll(List.of(renamedBeauxbatons, durmstrang)));
+        assertEquals("Beauxbatons Academy", yorm.find(Company.class, 20).name());
+        assertEquals("Durmstrang", yorm.find(Company.class, 21).name());
+        assertEquals(2, yorm.delete(Company.class, new long[]{20, 21}));
+        yorm.update(harry);
+    }
+
+    @Test
+    @Order(30)
+    void updateChangedColumns() throws YormException {
+        Person hermione = yorm.find(Person.class, 2);
+        assertFalse(yorm.update(hermione, hermione));
+        Person changed = new Person(2, hermione.name(), "hermione@ministry.gov", hermione.lastLogin(), hermione.companyId());
+        assertTrue(yorm.update(hermione, changed));
+        assertEquals(changed, yorm.find(Person.class, 2));
+        assertTrue(yorm.update(changed, hermione));
+        assertEquals(hermione, yorm.find(Person.class, 2));
+    }
+
+    @Test
+    @Order(33)
+    void rollbackFailedListWrites() throws YormException {
+        yorm.setInsertChunkSize(2);
+        LocalDate date = LocalDate.of(1995, 3, 1);
+        // The third record can't be bound, after the first chunk has already been sent
+        List<Company> inserted = List.of(
+            new Company(0, "Beauxbatons", "FR", date, 0f, true, CompanyType.NOT_GREEDY, false),
+            new Company(0, "Durmstrang", "NO", date, 0f, true, CompanyType.NOT_GREEDY, false),
+            new Company(0, "Gringotts", "GB", date, 0f, true, CompanyType.GREEDY, null));
+        List<Company> companies = yorm.from(Company.class).orderBy(Company::id).find();
+        assertThrows(NullPointerException.class, () -> yorm.insert(inserted));
+        yorm.setInsertChunkSize(QuerySave.DEFAULT_CHUNK_SIZE);
+        assertEquals(companies, yorm.from(Company.class).orderBy(Company::id).find());
+        Company hogwarts = companies.get(0);
+        Company changed = new Company(hogwarts.id(), hogwarts.name(), hogwarts.countryCode(), hogwarts.date(), 42f, hogwarts.isActive(),
+            hogwarts.companyType(), hogwarts.isEvil());
+        Company unbindable = new Company(hogwarts.id(), hogwarts.name(), hogwarts.countryCode(), hogwarts.date(), 42f, hogwarts.isActive(),
+            hogwarts.companyType(), null);
+        assertThrows(NullPointerException.class, () -> yorm.update(List.of(changed, unbindable)));
+        assertEquals(companies, yorm.from(Company.class).orderBy(Company::id).find());
+        // The new record is inserted before the update fails
+        assertThrows(NullPointerException.class, () -> yorm.saveAll(List.of(inserted.get(0), unbindable)));
+        assertEquals(companies, yorm.from(Company.class).orderBy(Company::id).find());
+    }
+
+    @Test
+    @Order(34)
+    void refreshStaleSnapshot(@TempDir Path tempDir) throws YormException, SQLException {
+        Path snapshot = tempDir.resolve("yorm.snapshot");
+        yorm.saveSnapshot(snapshot);
+        List<Person> persons = yorm.from(Person.class).orderBy(Person::id).find();
+        // Underscores are ignored when matching names, so the record still maps to the renamed column
+        execute("ALTER TABLE person CHANGE last_login lastlogin DATETIME NOT NULL");
+        try {
+            Yorm snapshotYorm = new Yorm(ds);
+            snapshotYorm.loadSnapshot(snapshot).join();
+            assertEquals(persons, snapshotYorm.from(Person.class).orderBy(Person::id).find());
+        } finally {
+            execute("ALTER TABLE person CHANGE lastlogin last_login DATETIME NOT NULL");
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = ds.getConnection();
+            Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
 }
@@ -0,0 +1,4 @@
+package org.yorm.records;
+
+public record PersonSummary(int id, String name) {
+}